@@ -1,2 +1,2 @@
 set INSTALL_PATH=%~dp0
-"%INSTALL_PATH%jre21\bin\java" -Xmx4g -cp "%INSTALL_PATH%geohammer-jar-with-dependencies.jar" com.ugcs.geohammer.MainGeoHammer
\ No newline at end of file
+"%INSTALL_PATH%jre21\bin\java" -Xmx4g --add-modules jdk.incubator.vector -cp "%INSTALL_PATH%geohammer-jar-with-dependencies.jar" com.ugcs.geohammer.MainGeoHammer
\ No newline at end of file
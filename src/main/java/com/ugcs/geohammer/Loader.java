@@ -357,6 +357,8 @@ public class Loader {
 			case GprFile gprFile -> {
 				GprFile temp = new GprFile();
 				temp.open(file);
+				// source may be deleted after loading
+				temp.loadSamples();
 				gprFile.loadFrom(temp);
 			}
 			case DztFile dztFile -> {
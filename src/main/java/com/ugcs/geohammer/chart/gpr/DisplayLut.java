@@ -0,0 +1,100 @@
+package com.ugcs.geohammer.chart.gpr;
+
+import com.ugcs.geohammer.chart.tool.projection.math.GainFunction;
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+
+// Display transform of trace samples, evaluated when rasterized.
+// A sample row s maps a value v to (v - shift[s]) * scale[s], where
+// the shift combines middle amplitude and an optional background
+// profile (background removal preview) and the scale combines
+// depth gain, identity by default, and contrast. Mapped values index a shared table of the contrast
+// curve and palette, so samples are never modified for display.
+final class DisplayLut {
+
+    // table entries per unit of the curve argument
+    private static final int STEPS = 1024;
+
+    // tanh is flat beyond this argument at 8-bit color depth
+    private static final int RANGE = 8;
+
+    private static final int HALF = RANGE * STEPS;
+
+    private static final int[] GRAY = buildGray();
+
+    // contrast curve followed by palette
+    private static final int[] COLORS = buildColors(GRAY);
+
+    private final float[] shift;
+
+    private final float[] scale;
+
+    private DisplayLut(float[] shift, float[] scale) {
+        this.shift = shift;
+        this.scale = scale;
+    }
+
+    // threshold is the amplitude mapped to tanh(1); depth of the gain
+    // function is the sample index normalized to numSamples
+    static DisplayLut build(int numSamples, double threshold, float middleAmp,
+            @Nullable GainFunction gain, float @Nullable [] background) {
+        Check.condition(numSamples > 0);
+        Check.condition(threshold > 0);
+
+        float[] shift = new float[numSamples];
+        float[] scale = new float[numSamples];
+        float baseScale = (float) (STEPS / threshold);
+        for (int s = 0; s < numSamples; s++) {
+            shift[s] = middleAmp;
+            if (background != null && s < background.length) {
+                shift[s] += background[s];
+            }
+            scale[s] = baseScale;
+            if (gain != null) {
+                float depth = numSamples > 1 ? (float) s / (numSamples - 1) : 0;
+                scale[s] *= gain.getGain(depth);
+            }
+        }
+        return new DisplayLut(shift, scale);
+    }
+
+    private static int[] buildGray() {
+        int[] palette = new int[256];
+        for (int c = 0; c < palette.length; c++) {
+            palette[c] = RadargramRasterizer.OPACITY_MASK | (c << 16) | (c << 8) | c;
+        }
+        return palette;
+    }
+
+    // positive values are dark, as in the original tanh table
+    private static int[] buildColors(int[] palette) {
+        int[] colors = new int[2 * HALF + 1];
+        for (int i = 0; i < colors.length; i++) {
+            double x = (double) (i - HALF) / STEPS;
+            int c = (int) (127.0 - Math.tanh(x) * 127.0);
+            colors[i] = palette[c];
+        }
+        return colors;
+    }
+
+    int numSamples() {
+        return shift.length;
+    }
+
+    // mapped value of a sample, larger magnitude is more contrast;
+    // samples below the last row share its transform
+    float map(int sample, float value) {
+        int row = Math.min(sample, shift.length - 1);
+        return (value - shift[row]) * scale[row];
+    }
+
+    int color(float mapped) {
+        if (mapped >= HALF) {
+            return COLORS[2 * HALF];
+        }
+        if (mapped <= -HALF) {
+            return COLORS[0];
+        }
+        return COLORS[(int) mapped + HALF];
+    }
+}
@@ -7,6 +7,7 @@ import com.ugcs.geohammer.chart.gpr.axis.HorizontalRulerController;
 import com.ugcs.geohammer.chart.gpr.axis.HorizontalRulerDrawer;
 import com.ugcs.geohammer.chart.gpr.axis.LeftRulerController;
 import com.ugcs.geohammer.chart.gpr.axis.VerticalRulerDrawer;
+import com.ugcs.geohammer.chart.tool.projection.math.GainFunction;
 import com.ugcs.geohammer.format.meta.MetaFile;
 import com.ugcs.geohammer.model.TraceUnit;
 import com.ugcs.geohammer.view.Colors;
@@ -57,7 +58,6 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -108,6 +108,14 @@ public class GPRChart extends Chart {
 
     private final PrismDrawer prismDrawer;
 
+    private final TracePyramid tracePyramid = new TracePyramid(this::repaintEvent);
+
+    // display-only depth gain, samples are not changed
+    private @Nullable GainFunction displayGain;
+
+    // display-only profile subtracted from every trace
+    private float @Nullable [] backgroundPreview;
+
     private final ContrastSlider contrastSlider;
 
     private final MutableInt shiftGround = new MutableInt(0);
@@ -194,6 +202,34 @@ public class GPRChart extends Chart {
         profileField.updateMaxHeightInSamples();
     }
 
+    TracePyramid getTracePyramid() {
+        return tracePyramid;
+    }
+
+    // samples or traces of the file changed
+    public void tracesChanged() {
+        tracePyramid.invalidate();
+        prismDrawer.invalidate(profileField.getFile());
+    }
+
+    public @Nullable GainFunction getDisplayGain() {
+        return displayGain;
+    }
+
+    public void setDisplayGain(@Nullable GainFunction displayGain) {
+        this.displayGain = displayGain;
+        repaintEvent();
+    }
+
+    public float @Nullable [] getBackgroundPreview() {
+        return backgroundPreview;
+    }
+
+    public void setBackgroundPreview(float @Nullable [] backgroundPreview) {
+        this.backgroundPreview = backgroundPreview;
+        repaintEvent();
+    }
+
     public BaseSlider getContrastSlider() {
         return contrastSlider;
     }
@@ -373,8 +409,8 @@ public class GPRChart extends Chart {
                 || drawImage.getHeight() != height) {
             drawImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         }
+        // cleared or scrolled by the drawer
         int[] buffer = ((DataBufferInt) drawImage.getRaster().getDataBuffer()).getData();
-        Arrays.fill(buffer, Colors.AWT_TRANSPARENT.getRGB());
 
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
@@ -5,84 +5,182 @@ import java.awt.Rectangle;
 import java.util.Arrays;
 import java.util.List;
 
+import com.ugcs.geohammer.AppContext;
+import com.ugcs.geohammer.format.SgyFile;
 import com.ugcs.geohammer.format.gpr.Trace;
 import com.ugcs.geohammer.model.Model;
 import com.ugcs.geohammer.Settings;
+import com.ugcs.geohammer.chart.tool.projection.math.GainFunction;
+import com.ugcs.geohammer.view.Colors;
 
 public class PrismDrawer {
 
-	static final int OPACITY_MASK = 0xff << 24;
+	static final int OPACITY_MASK = RadargramRasterizer.OPACITY_MASK;
+
+	private static final int TRANSPARENT = Colors.AWT_TRANSPARENT.getRGB();
+
+	private static final int TILE_WIDTH = RadargramTileCache.TILE_WIDTH;
 
 	private Model model;
-	private Tanh tanh = new Tanh();
-	
+	private RadargramTileCache tileCache;
+	private DisplayLut lut;
+
+	// last composed raster, redrawn when the view or scroll changes;
+	// raster columns are counted from the first trace of the file
+	// and split into tiles, so a scrolled view reuses rendered tiles
+	private int[] lastBuffer;
+	private View lastView;
+	private int lastOffsetX;
+
 	public PrismDrawer(Model model) {
 		this.model = model;
+		this.tileCache = AppContext.getInstance(RadargramTileCache.class);
+	}
+
+	// everything besides the scroll position that defines the raster
+	private record View(
+			int numTraces,
+			int maxSamples,
+			int levelFactor,
+			int pyramidVersion,
+			double horizontalScale,
+			double viewWidth,
+			int startSample,
+			double verticalScale,
+			int topMargin,
+			int firstSample,
+			int numSamples,
+			int mainX,
+			int mainWidth,
+			int numRows,
+			float middleAmp,
+			double threshold,
+			GainFunction gain,
+			float[] background) {
+	}
+
+	// samples or traces of the file changed
+	public void invalidate(SgyFile file) {
+		lastView = null;
+		tileCache.invalidate(file);
 	}
 
 	public void draw(
-			int bytesInRow, 
+			int bytesInRow,
 			GPRChart field,
 			Graphics2D g2,
-			int[] buffer,			
+			int[] buffer,
 			double threshold) {
-		
+
 		if (model.isLoading() || !model.getFileManager().isActive()) {
+			Arrays.fill(buffer, TRANSPARENT);
+			lastView = null;
 			return;
 		}
-		
-		Rectangle rect = field.getField().getMainRect();
+
+		Rectangle rect = new Rectangle(field.getField().getMainRect());
 
 		List<Trace> traces = field.getField().getGprTraces();
-		
-		tanh.setThreshold((float) threshold);
-		
-		int startTrace = field.getFirstVisibleTrace();
-		int finishTrace = field.getLastVisibleTrace();
-		int lastSample = field.getLastVisibleSample();
+		int maxSamples = field.getField().getMaxHeightInSamples();
 
-        int baseOffsetX = rect.x + rect.width / 2;
+		TracePyramid pyramid = field.getTracePyramid();
+		pyramid.update(traces, maxSamples);
+
+		int firstSample = Math.max(0, field.getStartSample());
+		int lastSample = field.getLastVisibleSample();
 
 		Settings profileSettings = field.getField().getSettings();
 		float middleAmp = profileSettings.getMiddleAmplitude();
 
-		for (int i = startTrace; i <= finishTrace; i++) {
-			if (i < 0 || i >= traces.size()) {
-				continue;
-			}
+		double horizontalScale = field.getHorizontalScale();
+		TracePyramid.Level level = horizontalScale < 1
+				? pyramid.selectLevel(traces, maxSamples, 1 / horizontalScale)
+				: null;
+
+		View view = new View(
+				traces.size(),
+				maxSamples,
+				level != null ? level.getFactor() : 0,
+				pyramid.getVersion(),
+				horizontalScale,
+				field.getViewWidth(),
+				field.getStartSample(),
+				field.getVerticalScale(),
+				field.getField().getTopMargin(),
+				firstSample,
+				lastSample - firstSample,
+				rect.x,
+				rect.width,
+				buffer.length / bytesInRow,
+				middleAmp,
+				threshold,
+				field.getDisplayGain(),
+				field.getBackgroundPreview());
 
-			int traceStartX = field.traceToScreen(i);
-			int traceFinishX = field.traceToScreen(i + 1);
-			int hscale = traceFinishX - traceStartX;
-			if (hscale < 1) {
-				continue;
+		int offsetX = (int) Math.round(field.getStartTrace() * horizontalScale);
+		if (buffer == lastBuffer && view.equals(lastView) && offsetX == lastOffsetX) {
+			return;
+		}
+		if (buffer != lastBuffer) {
+			Arrays.fill(buffer, TRANSPARENT);
+		}
+		if (lut == null || !view.equals(lastView)) {
+			lut = DisplayLut.build(Math.max(1, maxSamples), threshold, middleAmp,
+					view.gain(), view.background());
+		}
+		lastBuffer = buffer;
+		lastView = view;
+		lastOffsetX = offsetX;
+
+		SgyFile file = field.getField().getFile();
+		int numRows = view.numRows();
+		int firstTile = Math.floorDiv(offsetX, TILE_WIDTH);
+		int lastTile = Math.floorDiv(offsetX + rect.width - 1, TILE_WIDTH);
+		for (int index = firstTile; index <= lastTile; index++) {
+			RadargramTileCache.TileKey key = new RadargramTileCache.TileKey(file, view, index);
+			int[] tile = tileCache.get(key);
+			if (tile == null) {
+				tile = renderTile(traces, level, view, index);
+				tileCache.put(key, tile);
 			}
-			
-			Trace trace = traces.get(i);
-
-			for (int j = field.getStartSample();
-                 j < Math.min(lastSample, trace.numSamples()); j++) {
-				
-				int sampStart = field.sampleToScreen(j);
-				int sampFinish = field.sampleToScreen(j + 1);
-				
-				int vscale = sampFinish - sampStart;
-				if (vscale == 0) {
-					continue;
-				}
-				
-				if (j < 0 || j >= trace.numSamples()) {
-					continue;
-				}
-				float v = trace.getSample(j);
-				int color = tanh.trans(v - middleAmp);
-				
-                int baseIndex = baseOffsetX + traceStartX + sampStart * bytesInRow;
-                for (int yt = 0; yt < vscale; yt++) {
-                    int rowStart = baseIndex + yt * bytesInRow;
-                    Arrays.fill(buffer, rowStart, rowStart + hscale, color | OPACITY_MASK);
-                }
+			// visible columns of the tile
+			int tileStart = index * TILE_WIDTH;
+			int from = Math.max(tileStart, offsetX);
+			int to = Math.min(tileStart + TILE_WIDTH, offsetX + rect.width);
+			for (int y = 0; y < numRows; y++) {
+				System.arraycopy(tile, y * TILE_WIDTH + from - tileStart,
+						buffer, y * bytesInRow + rect.x + from - offsetX,
+						to - from);
 			}
 		}
-	}	
+	}
+
+	private int[] renderTile(List<Trace> traces, TracePyramid.Level level, View view, int index) {
+		int[] tile = new int[TILE_WIDTH * view.numRows()];
+		Arrays.fill(tile, TRANSPARENT);
+		// tile column 0 is the raster column index * TILE_WIDTH
+		int offsetX = index * TILE_WIDTH + TILE_WIDTH / 2 - view.mainWidth() / 2;
+		RadargramRasterizer.Frame frame = new RadargramRasterizer.Frame(
+				traces,
+				level,
+				0,
+				traces.size() - 1,
+				0,
+				view.horizontalScale(),
+				view.viewWidth(),
+				view.startSample(),
+				view.verticalScale(),
+				view.topMargin(),
+				view.firstSample(),
+				view.numSamples(),
+				0,
+				TILE_WIDTH,
+				offsetX,
+				0,
+				TILE_WIDTH,
+				TILE_WIDTH,
+				lut);
+		RadargramRasterizer.rasterize(frame, tile, RadargramRasterizer.defaultParallelism());
+		return tile;
+	}
 }
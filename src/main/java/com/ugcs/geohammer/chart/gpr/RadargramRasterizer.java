@@ -0,0 +1,317 @@
+package com.ugcs.geohammer.chart.gpr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+
+// Rasterizes trace samples into an int ARGB buffer. The visible area
+// is split into vertical stripes of traces or pixel columns that are
+// rendered in parallel; stripes never share a pixel, so the output
+// does not depend on the number of stripes. A frame may be drawn
+// only within a range of columns, which lets a scrolled raster be
+// shifted and completed with the newly exposed columns.
+final class RadargramRasterizer {
+
+    static final int OPACITY_MASK = 0xff << 24;
+
+    // widest group of traces aggregated from samples
+    static final int MAX_RAW_TRACES = 1 << TracePyramid.BASE_LEVEL;
+
+    // narrower stripes are not worth a task
+    private static final int MIN_STRIPE_WIDTH = 64;
+
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE,
+            Thread.ofPlatform().name("gpr-render-", 0).daemon().factory());
+
+    // view geometry and values of a single frame; trace positions
+    // are relative to startTrace and moved left by offsetX pixels,
+    // only columns in [clipFrom, clipTo) are drawn
+    record Frame(
+            List<Trace> traces,
+            // pyramid level for zoomed out views, null to use samples
+            TracePyramid.@Nullable Level level,
+            int firstTrace,
+            int lastTrace,
+            int startTrace,
+            double horizontalScale,
+            double viewWidth,
+            int startSample,
+            double verticalScale,
+            int topMargin,
+            int firstSample,
+            int numSamples,
+            int mainX,
+            int mainWidth,
+            int offsetX,
+            int clipFrom,
+            int clipTo,
+            int bytesInRow,
+            DisplayLut lut) {
+
+        int traceToScreen(int trace) {
+            double x = (trace - startTrace) * horizontalScale;
+            return (int) (x - 0.5 * viewWidth);
+        }
+
+        // first trace drawn in a buffer column
+        int columnToTrace(int x) {
+            double screenX = x - baseOffsetX() + offsetX + 0.5 * viewWidth;
+            return startTrace + (int) Math.floor(screenX / horizontalScale);
+        }
+
+        int sampleToScreen(int sample) {
+            return (int) ((sample - startSample) * verticalScale + topMargin);
+        }
+
+        int baseOffsetX() {
+            return mainX + mainWidth / 2;
+        }
+    }
+
+    static int defaultParallelism() {
+        return POOL_SIZE + 1;
+    }
+
+    static void rasterize(Frame frame, int[] buffer, int parallelism) {
+        Check.notNull(frame);
+        Check.notNull(buffer);
+        Check.condition(parallelism > 0);
+
+        if (frame.numSamples() <= 0) {
+            return;
+        }
+        boolean zoomedIn = frame.horizontalScale() >= 1;
+        int clipFrom = Math.max(frame.clipFrom(), frame.mainX());
+        int clipTo = Math.min(frame.clipTo(), frame.mainX() + frame.mainWidth());
+        if (clipFrom >= clipTo) {
+            return;
+        }
+        int from;
+        int to;
+        if (zoomedIn) {
+            // one more trace on each side, as positions are truncated
+            from = Math.max(frame.firstTrace(), frame.columnToTrace(clipFrom) - 1);
+            to = Math.min(frame.lastTrace(), frame.columnToTrace(clipTo - 1) + 1) + 1;
+        } else {
+            from = clipFrom;
+            to = clipTo;
+        }
+        if (from >= to) {
+            return;
+        }
+        // stripe width in pixels is about the same for both kinds
+        int widthInPixels = zoomedIn
+                ? (int) Math.min(Integer.MAX_VALUE, (to - from) * frame.horizontalScale())
+                : to - from;
+        int numStripes = Math.clamp(widthInPixels / MIN_STRIPE_WIDTH, 1, parallelism);
+        int stripeSize = (to - from + numStripes - 1) / numStripes;
+
+        List<Future<?>> tasks = new ArrayList<>(numStripes - 1);
+        for (int stripe = 1; stripe < numStripes; stripe++) {
+            int stripeFrom = from + stripe * stripeSize;
+            int stripeTo = Math.min(to, stripeFrom + stripeSize);
+            if (stripeFrom < stripeTo) {
+                tasks.add(pool.submit(() -> renderStripe(frame, buffer, zoomedIn, stripeFrom, stripeTo)));
+            }
+        }
+        try {
+            renderStripe(frame, buffer, zoomedIn, from, Math.min(to, from + stripeSize));
+        } finally {
+            awaitAll(tasks);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> tasks) {
+        boolean interrupted = false;
+        RuntimeException error = null;
+        for (Future<?> task : tasks) {
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // stripes write to the caller's buffer,
+                    // so they are awaited anyway
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof RuntimeException runtimeException
+                                ? runtimeException
+                                : new IllegalStateException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static void renderStripe(Frame frame, int[] buffer, boolean zoomedIn, int from, int to) {
+        Stripe stripe = new Stripe(frame, buffer);
+        if (zoomedIn) {
+            stripe.renderTraces(from, to);
+        } else {
+            stripe.renderColumns(from, to);
+        }
+    }
+
+    private static final class Stripe {
+
+        private final Frame frame;
+
+        private final int[] buffer;
+
+        // min and max of the visible samples in a pixel column
+        private final float[] columnMin;
+
+        private final float[] columnMax;
+
+        Stripe(Frame frame, int[] buffer) {
+            this.frame = frame;
+            this.buffer = buffer;
+            this.columnMin = new float[frame.numSamples()];
+            this.columnMax = new float[frame.numSamples()];
+        }
+
+        // traces one or more pixels wide
+        void renderTraces(int from, int to) {
+            List<Trace> traces = frame.traces();
+            for (int i = from; i < to; i++) {
+                if (i < 0 || i >= traces.size()) {
+                    continue;
+                }
+                int traceStartX = frame.traceToScreen(i);
+                int traceFinishX = frame.traceToScreen(i + 1);
+                int hscale = traceFinishX - traceStartX;
+                if (hscale < 1) {
+                    continue;
+                }
+                clearColumn();
+                addTrace(traces.get(i));
+                drawColumn(frame.baseOffsetX() + traceStartX - frame.offsetX(), hscale);
+            }
+        }
+
+        // pixel columns covering groups of traces
+        void renderColumns(int from, int to) {
+            List<Trace> traces = frame.traces();
+            TracePyramid.Level level = frame.level();
+            for (int x = from; x < to; x++) {
+                int first = frame.columnToTrace(x);
+                int last = frame.columnToTrace(x + 1);
+                first = Math.max(first, 0);
+                last = Math.min(Math.max(last, first + 1), traces.size());
+                if (first >= last) {
+                    continue;
+                }
+
+                clearColumn();
+                if (level != null) {
+                    addCells(level, first, last);
+                } else {
+                    // narrow groups are aggregated from samples,
+                    // wide groups are decimated until the pyramid is built
+                    int step = last - first > MAX_RAW_TRACES ? last - first : 1;
+                    for (int i = first; i < last; i += step) {
+                        addTrace(traces.get(i));
+                    }
+                }
+                drawColumn(x, 1);
+            }
+        }
+
+        private void clearColumn() {
+            Arrays.fill(columnMin, Float.NaN);
+            Arrays.fill(columnMax, Float.NaN);
+        }
+
+        private void add(int index, float min, float max) {
+            if (Float.isNaN(columnMin[index])) {
+                columnMin[index] = min;
+                columnMax[index] = max;
+            } else {
+                columnMin[index] = Math.min(columnMin[index], min);
+                columnMax[index] = Math.max(columnMax[index], max);
+            }
+        }
+
+        private void addTrace(Trace trace) {
+            int firstSample = frame.firstSample();
+            int n = Math.min(frame.numSamples(), trace.numSamples() - firstSample);
+            for (int j = 0; j < n; j++) {
+                float v = trace.getSample(firstSample + j);
+                add(j, v, v);
+            }
+        }
+
+        private void addCells(TracePyramid.Level level, int from, int to) {
+            int firstSample = frame.firstSample();
+            int n = Math.min(frame.numSamples(), level.numSamples() - firstSample);
+            int factor = level.getFactor();
+            int lastColumn = Math.min((to - 1) / factor, level.numColumns() - 1);
+            for (int column = from / factor; column <= lastColumn; column++) {
+                for (int j = 0; j < n; j++) {
+                    float min = level.getMin(column, firstSample + j);
+                    if (!Float.isNaN(min)) {
+                        add(j, min, level.getMax(column, firstSample + j));
+                    }
+                }
+            }
+        }
+
+        // samples sharing a pixel row are drawn by the one
+        // that deviates most after the display transform; columns are
+        // clipped to the main rect so that edge traces do not wrap
+        // into the neighbour rows owned by other stripes
+        private void drawColumn(int x, int width) {
+            int fromX = Math.max(x, Math.max(frame.clipFrom(), frame.mainX()));
+            int toX = Math.min(x + width, Math.min(frame.clipTo(), frame.mainX() + frame.mainWidth()));
+            if (fromX >= toX) {
+                return;
+            }
+            int firstSample = frame.firstSample();
+            int bytesInRow = frame.bytesInRow();
+            DisplayLut lut = frame.lut();
+            float value = Float.NaN;
+            int rowStart = frame.sampleToScreen(firstSample);
+            for (int j = 0; j < columnMin.length; j++) {
+                if (!Float.isNaN(columnMin[j])) {
+                    float low = lut.map(firstSample + j, columnMin[j]);
+                    float high = lut.map(firstSample + j, columnMax[j]);
+                    float deviation = -low > high ? low : high;
+                    if (Float.isNaN(value) || Math.abs(deviation) > Math.abs(value)) {
+                        value = deviation;
+                    }
+                }
+                int rowFinish = frame.sampleToScreen(firstSample + j + 1);
+                if (rowFinish == rowStart) {
+                    continue;
+                }
+                if (!Float.isNaN(value)) {
+                    int color = lut.color(value);
+                    for (int y = rowStart; y < rowFinish; y++) {
+                        int index = y * bytesInRow;
+                        Arrays.fill(buffer, index + fromX, index + toX, color);
+                    }
+                }
+                value = Float.NaN;
+                rowStart = rowFinish;
+            }
+        }
+    }
+}
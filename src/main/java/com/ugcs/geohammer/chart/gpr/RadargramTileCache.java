@@ -0,0 +1,136 @@
+package com.ugcs.geohammer.chart.gpr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ugcs.geohammer.format.SgyFile;
+import com.ugcs.geohammer.model.event.FileClosedEvent;
+import com.ugcs.geohammer.model.event.WhatChanged;
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Rendered radargram tiles shared by all GPR charts. A tile is
+// a fixed-width range of raster columns of a file rendered for
+// a view; views differing only in scroll position share tiles.
+// Tiles are evicted in LRU order when their pixels exceed the budget.
+@Component
+public class RadargramTileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RadargramTileCache.class);
+
+    // columns per tile
+    static final int TILE_WIDTH = 512;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<TileKey, int[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    private long hits;
+
+    private long misses;
+
+    public RadargramTileCache(@Value("${gpr.tiles.maxBytes:268435456}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        log.info("Radargram tile cache size: {} MB", maxBytes >> 20);
+    }
+
+    // view is a value object with everything besides the scroll
+    // position that defines tile pixels; files are compared by identity
+    record TileKey(SgyFile file, Object view, int index) {
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof TileKey key
+                    && file == key.file
+                    && index == key.index
+                    && view.equals(key.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(file) + view.hashCode()) + index;
+        }
+    }
+
+    synchronized int @Nullable [] get(TileKey key) {
+        int[] tile = tiles.get(key);
+        if (tile != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return tile;
+    }
+
+    synchronized void put(TileKey key, int[] tile) {
+        Check.notNull(key);
+        Check.notNull(tile);
+
+        long bytes = (long) tile.length * Integer.BYTES;
+        if (bytes > maxBytes) {
+            return;
+        }
+        int[] replaced = tiles.put(key, tile);
+        if (replaced != null) {
+            totalBytes -= (long) replaced.length * Integer.BYTES;
+        }
+        totalBytes += bytes;
+        Iterator<int[]> it = tiles.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= (long) it.next().length * Integer.BYTES;
+            it.remove();
+        }
+    }
+
+    public synchronized void invalidate(SgyFile file) {
+        Iterator<Map.Entry<TileKey, int[]>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TileKey, int[]> entry = it.next();
+            if (entry.getKey().file() == file) {
+                totalBytes -= (long) entry.getValue().length * Integer.BYTES;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // trace events do not tell the file, tiles of all files are dropped
+    @EventListener
+    private void onChange(WhatChanged event) {
+        if (event.isTraceCut() || event.isTraceValues()) {
+            clear();
+        }
+    }
+
+    @EventListener
+    private void fileClosed(FileClosedEvent event) {
+        SgyFile file = event.getFile();
+        if (file != null) {
+            invalidate(file);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.ugcs.geohammer.chart.gpr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.model.IndexRange;
+import com.ugcs.geohammer.util.Check;
+import com.ugcs.geohammer.util.RangeTasks;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Multi-resolution min and max of trace samples for drawing
+// zoomed out profiles. A cell of level k aggregates a sample over
+// 2^k adjacent traces; levels start at BASE_LEVEL, narrower groups
+// are aggregated from the traces when drawn. The pyramid is built
+// in background, changed traces rebuild only their base cells
+// and the cells above them. Samples are read past the page cache,
+// so a build does not load the whole file into memory.
+final class TracePyramid {
+
+    private static final Logger log = LoggerFactory.getLogger(TracePyramid.class);
+
+    static final int BASE_LEVEL = 5;
+
+    // base columns per build task
+    private static final int CHUNK_SIZE = 16;
+
+    private final Runnable onUpdate;
+
+    private int numTraces;
+
+    private int numSamples;
+
+    // state of every trace when its cells were computed
+    private int[] stamps = new int[0];
+
+    private volatile Level @Nullable [] levels;
+
+    private volatile boolean dirty = true;
+
+    private boolean building;
+
+    // incremented when cells of the levels change
+    private volatile int version;
+
+    TracePyramid(Runnable onUpdate) {
+        this.onUpdate = Check.notNull(onUpdate);
+    }
+
+    static final class Level {
+
+        private final int factor;
+
+        private final int numColumns;
+
+        private final int numSamples;
+
+        // column-major cells, NaN where no trace has the sample
+        private final float[] min;
+
+        private final float[] max;
+
+        Level(int factor, int numTraces, int numSamples) {
+            this.factor = factor;
+            this.numColumns = (numTraces + factor - 1) / factor;
+            this.numSamples = numSamples;
+            int numCells = numColumns * numSamples;
+            this.min = new float[numCells];
+            this.max = new float[numCells];
+        }
+
+        int getFactor() {
+            return factor;
+        }
+
+        int numColumns() {
+            return numColumns;
+        }
+
+        int numSamples() {
+            return numSamples;
+        }
+
+        float getMin(int column, int sample) {
+            return min[column * numSamples + sample];
+        }
+
+        float getMax(int column, int sample) {
+            return max[column * numSamples + sample];
+        }
+    }
+
+    // traces changed, checked on the next update
+    void invalidate() {
+        dirty = true;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    // coarsest level with groups not wider than the given number
+    // of traces, null when the pyramid is not built for the traces;
+    // levels being updated for changed values stay selectable
+    synchronized @Nullable Level selectLevel(List<Trace> traces, int numSamples, double tracesPerColumn) {
+        Level[] levels = this.levels;
+        if (levels == null || traces.size() != numTraces || numSamples != this.numSamples) {
+            return null;
+        }
+        Level selected = null;
+        for (Level level : levels) {
+            if (level.factor > tracesPerColumn) {
+                break;
+            }
+            selected = level;
+        }
+        return selected;
+    }
+
+    // starts a build when traces changed, called from the drawing thread
+    synchronized void update(List<Trace> traces, int numSamples) {
+        Check.notNull(traces);
+
+        int n = traces.size();
+        if (building || !dirty && n == numTraces && numSamples == this.numSamples) {
+            return;
+        }
+        if (n < 1 << BASE_LEVEL || numSamples <= 0) {
+            levels = null;
+            numTraces = n;
+            this.numSamples = numSamples;
+            dirty = false;
+            return;
+        }
+        List<Integer> changed = null;
+        if (n == numTraces && numSamples == this.numSamples && levels != null) {
+            changed = changedColumns(traces);
+            if (changed.isEmpty()) {
+                dirty = false;
+                return;
+            }
+        }
+        building = true;
+        dirty = false;
+        List<Integer> columns = changed;
+        Thread.ofVirtual().name("trace-pyramid").start(() -> build(traces, numSamples, columns));
+    }
+
+    private static int stamp(Trace trace) {
+        IndexRange range = trace.getSampleRange();
+        int h = System.identityHashCode(trace);
+        h = 31 * h + System.identityHashCode(trace.getMatrix());
+        h = 31 * h + trace.getMatrix().getVersion();
+        h = 31 * h + trace.numSamples();
+        h = 31 * h + (range != null ? range.from() : -1);
+        return h;
+    }
+
+    private List<Integer> changedColumns(List<Trace> traces) {
+        List<Integer> columns = new ArrayList<>();
+        int factor = 1 << BASE_LEVEL;
+        for (int column = 0; column * factor < numTraces; column++) {
+            int to = Math.min(numTraces, (column + 1) * factor);
+            for (int i = column * factor; i < to; i++) {
+                if (stamps[i] != stamp(traces.get(i))) {
+                    columns.add(column);
+                    break;
+                }
+            }
+        }
+        return columns;
+    }
+
+    private void build(List<Trace> traces, int numSamples, @Nullable List<Integer> changed) {
+        boolean built = false;
+        try {
+            if (changed == null) {
+                buildAll(traces, numSamples);
+            } else {
+                buildColumns(traces, changed);
+            }
+            built = true;
+            version++;
+        } catch (RuntimeException e) {
+            // retried on the next change of traces
+            log.warn("Failed to build trace pyramid", e);
+        } finally {
+            synchronized (this) {
+                building = false;
+            }
+        }
+        if (built) {
+            onUpdate.run();
+        }
+    }
+
+    private void buildAll(List<Trace> traces, int numSamples) {
+        int n = traces.size();
+        List<Level> built = new ArrayList<>();
+        for (int k = BASE_LEVEL; (1 << k) <= n; k++) {
+            built.add(new Level(1 << k, n, numSamples));
+        }
+        Level[] newLevels = built.toArray(new Level[0]);
+        int[] newStamps = new int[n];
+
+        Level base = newLevels[0];
+        RangeTasks.forEach(base.numColumns, CHUNK_SIZE, (from, to) -> {
+            for (int column = from; column < to; column++) {
+                computeBase(base, traces, newStamps, column);
+            }
+        });
+        for (int k = 1; k < newLevels.length; k++) {
+            Level level = newLevels[k];
+            Level child = newLevels[k - 1];
+            RangeTasks.forEach(level.numColumns, CHUNK_SIZE, (from, to) -> {
+                for (int column = from; column < to; column++) {
+                    combine(level, child, column);
+                }
+            });
+        }
+
+        synchronized (this) {
+            this.numTraces = n;
+            this.numSamples = numSamples;
+            this.stamps = newStamps;
+            this.levels = newLevels;
+        }
+    }
+
+    private void buildColumns(List<Trace> traces, List<Integer> columns) {
+        Level[] levels = this.levels;
+        if (levels == null) {
+            return;
+        }
+        Level base = levels[0];
+        RangeTasks.forEach(columns.size(), 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                computeBase(base, traces, stamps, columns.get(i));
+            }
+        });
+        // parents of the changed columns, level by level
+        List<Integer> current = columns;
+        for (int k = 1; k < levels.length; k++) {
+            List<Integer> parents = new ArrayList<>();
+            for (int column : current) {
+                int parent = column / 2;
+                if (parents.isEmpty() || parents.getLast() != parent) {
+                    parents.add(parent);
+                }
+            }
+            for (int parent : parents) {
+                combine(levels[k], levels[k - 1], parent);
+            }
+            current = parents;
+        }
+    }
+
+    private static void computeBase(Level level, List<Trace> traces, int[] stamps, int column) {
+        int from = column * level.factor;
+        int to = Math.min(traces.size(), from + level.factor);
+        int offset = column * level.numSamples;
+        float[] min = level.min;
+        float[] max = level.max;
+        for (int s = 0; s < level.numSamples; s++) {
+            min[offset + s] = Float.POSITIVE_INFINITY;
+            max[offset + s] = Float.NEGATIVE_INFINITY;
+        }
+        for (int i = from; i < to; i++) {
+            Trace trace = traces.get(i);
+            stamps[i] = stamp(trace);
+            float[] samples = trace.getMatrix().readRow(trace.getRow());
+            int rangeFrom = trace.getRangeOffset() - trace.getSampleOffset();
+            int length = Math.min(Math.min(level.numSamples, trace.numSamples()),
+                    samples.length - rangeFrom);
+            for (int s = 0; s < length; s++) {
+                float value = samples[rangeFrom + s];
+                if (value < min[offset + s]) {
+                    min[offset + s] = value;
+                }
+                if (value > max[offset + s]) {
+                    max[offset + s] = value;
+                }
+            }
+        }
+        for (int s = 0; s < level.numSamples; s++) {
+            if (min[offset + s] > max[offset + s]) {
+                min[offset + s] = Float.NaN;
+                max[offset + s] = Float.NaN;
+            }
+        }
+    }
+
+    // parent cells from two child columns
+    private static void combine(Level level, Level child, int column) {
+        int left = 2 * column;
+        int right = left + 1;
+        boolean hasRight = right < child.numColumns;
+        int offset = column * level.numSamples;
+        int leftOffset = left * child.numSamples;
+        int rightOffset = right * child.numSamples;
+        for (int s = 0; s < level.numSamples; s++) {
+            float min = child.min[leftOffset + s];
+            float max = child.max[leftOffset + s];
+            if (hasRight && !Float.isNaN(child.min[rightOffset + s])) {
+                boolean empty = Float.isNaN(min);
+                min = empty ? child.min[rightOffset + s] : Math.min(min, child.min[rightOffset + s]);
+                max = empty ? child.max[rightOffset + s] : Math.max(max, child.max[rightOffset + s]);
+            }
+            level.min[offset + s] = min;
+            level.max[offset + s] = max;
+        }
+    }
+}
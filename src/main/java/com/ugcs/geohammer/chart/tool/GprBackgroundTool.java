@@ -1,23 +1,31 @@
 package com.ugcs.geohammer.chart.tool;
 
 import com.ugcs.geohammer.ProfileView;
+import com.ugcs.geohammer.chart.gpr.GPRChart;
 import com.ugcs.geohammer.format.SgyFile;
 import com.ugcs.geohammer.format.TraceFile;
+import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.math.BackgroundRemovalFilter;
 import com.ugcs.geohammer.model.Model;
 import com.ugcs.geohammer.model.event.FileOpenedEvent;
 import com.ugcs.geohammer.model.event.FileSelectedEvent;
+import com.ugcs.geohammer.model.event.FileUpdatedEvent;
 import com.ugcs.geohammer.model.event.WhatChanged;
 import com.ugcs.geohammer.model.undo.UndoModel;
 import com.ugcs.geohammer.service.gpr.CommandRegistry;
 import com.ugcs.geohammer.service.gpr.SpreadCoordinates;
 import com.ugcs.geohammer.view.Views;
 import javafx.application.Platform;
+import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import org.jspecify.annotations.Nullable;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 @Component
@@ -35,6 +43,9 @@ public class GprBackgroundTool extends FilterToolView {
 
     private final Button removeBackground;
 
+    // shows files with background removed, samples are not changed
+    private final CheckBox previewBackground;
+
     public GprBackgroundTool(
             Model model,
             UndoModel undoModel,
@@ -59,6 +70,10 @@ public class GprBackgroundTool extends FilterToolView {
         removeBackground.setMaxWidth(Double.MAX_VALUE);
         HBox.setHgrow(removeBackground, Priority.ALWAYS);
 
+        previewBackground = new CheckBox("Preview");
+        previewBackground.selectedProperty().addListener(
+                (observable, oldValue, newValue) -> updatePreview());
+
         // disable base filter buttons
         buttonContainer.setVisible(false);
         buttonContainer.setManaged(false);
@@ -66,15 +81,20 @@ public class GprBackgroundTool extends FilterToolView {
 
     private void spreadCoordinates() {
         submitAction(() -> {
-            commandRegistry.runForGprFiles(
-                    model.getFileManager().getGprFiles(),
-                    new SpreadCoordinates());
+            List<TraceFile> files = model.getFileManager().getGprFiles();
+            commandRegistry.runForGprFiles(files, new SpreadCoordinates());
+            // trace locations are changed in place
+            for (TraceFile file : files) {
+                model.publishEvent(new FileUpdatedEvent(this, file));
+            }
             Platform.runLater(this::updateView);
             return null;
         });
     }
 
     private void removeBackground() {
+        // removed background is not subtracted again on display
+        previewBackground.setSelected(false);
         submitAction(() -> {
             for (TraceFile traceFile : model.getFileManager().getGprFiles()) {
                 if (!traceFile.isBackgroundRemoved()) {
@@ -86,6 +106,30 @@ public class GprBackgroundTool extends FilterToolView {
         });
     }
 
+    // background profiles are applied by the chart display transform,
+    // there are no sample changes and no undo snapshots
+    private void updatePreview() {
+        boolean preview = previewBackground.isSelected();
+        submitAction(() -> {
+            for (TraceFile traceFile : model.getFileManager().getGprFiles()) {
+                float[] profile = preview ? getBackgroundProfile(traceFile) : null;
+                GPRChart chart = model.getGprChart(traceFile);
+                if (chart != null) {
+                    Platform.runLater(() -> chart.setBackgroundPreview(profile));
+                }
+            }
+            return null;
+        }, preview);
+    }
+
+    private static float @Nullable [] getBackgroundProfile(TraceFile traceFile) {
+        List<Trace> traces = traceFile.getTraces();
+        if (traceFile.isBackgroundRemoved() || traces.size() <= 1) {
+            return null;
+        }
+        return new BackgroundRemovalFilter().prepareNoiseProfile(traces, traceFile.getMaxSamples());
+    }
+
     @Override
     public boolean isVisibleFor(SgyFile file) {
         return file instanceof TraceFile;
@@ -99,7 +143,9 @@ public class GprBackgroundTool extends FilterToolView {
             inputContainer.getChildren().addAll(profileView.getRight(traceFile));
             HBox buttons = new HBox(Views.DEFAULT_SPACING,
                     removeBackground,
+                    previewBackground,
                     spreadCoordinates);
+            buttons.setAlignment(Pos.CENTER_LEFT);
             inputContainer.getChildren().add(buttons);
         }
     }
@@ -111,7 +157,12 @@ public class GprBackgroundTool extends FilterToolView {
 
     @EventListener
     private void onFileOpened(FileOpenedEvent event) {
-        Platform.runLater(this::updateView);
+        Platform.runLater(() -> {
+            updateView();
+            if (previewBackground.isSelected()) {
+                updatePreview();
+            }
+        });
     }
 
     @EventListener
@@ -119,5 +170,13 @@ public class GprBackgroundTool extends FilterToolView {
         if (changed.isUpdateButtons() || changed.isTraceCut()) {
             Platform.runLater(this::updateView);
         }
+        if (changed.isTraceCut() || changed.isTraceValues()) {
+            // profiles follow the current samples
+            Platform.runLater(() -> {
+                if (previewBackground.isSelected()) {
+                    updatePreview();
+                }
+            });
+        }
     }
 }
@@ -1,6 +1,5 @@
 package com.ugcs.geohammer.chart.tool.projection;
 
-import com.github.thecoldwine.sigrun.common.TraceHeader;
 import com.ugcs.geohammer.chart.tool.projection.model.Grid;
 import com.ugcs.geohammer.chart.tool.projection.model.GridOptions;
 import com.ugcs.geohammer.chart.tool.projection.model.ProjectionModel;
@@ -11,6 +10,7 @@ import com.ugcs.geohammer.chart.tool.projection.model.TraceProfile;
 import com.ugcs.geohammer.chart.tool.projection.model.TraceSelection;
 import com.ugcs.geohammer.format.TraceFile;
 import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.format.gpr.segy.TraceHeaderView;
 import com.ugcs.geohammer.model.IndexRange;
 import com.ugcs.geohammer.util.Progress;
 import com.ugcs.geohammer.util.SinglePendingExecutor;
@@ -132,10 +132,9 @@ public class ProjectionController {
             return 0;
         }
         Trace trace = traces.getFirst();
-        TraceHeader header = trace != null ? trace.getHeader() : null;
-        Short delay = header != null ? header.getDelayRecordingTime() : null;
-        return delay != null
-                ? Math.max(0, delay / sampleInterval)
+        TraceHeaderView header = trace != null ? trace.getHeader() : null;
+        return header != null
+                ? Math.max(0, header.getDelayRecordingTime() / sampleInterval)
                 : 0;
     }
 
@@ -155,16 +155,18 @@ public class HorizontalProfile {
         int[][] peaks = new int[n][];
         double bipolarSum = 0;
         for (int i = 0; i < n; i++) {
-            float[] samples = traces.get(i).getFileSamples();
-            peaks[i] = detectPeak(samples, surface[i]);
+            Trace trace = traces.get(i);
+            float[] samples = trace.getSampleArray();
+            int offset = trace.getSampleOffset();
+            peaks[i] = detectPeak(samples, offset, trace.numFileSamples(), surface[i]);
             // check polarity
             int min = peaks[i][0];
             int max = peaks[i][1];
-            if (samples[max] > 0) {
-                bipolarSum += samples[max];
+            if (samples[offset + max] > 0) {
+                bipolarSum += samples[offset + max];
             }
-            if (samples[min] < 0) {
-                bipolarSum += samples[min];
+            if (samples[offset + min] < 0) {
+                bipolarSum += samples[offset + min];
             }
         }
         int polarity = bipolarSum >= 0 ? 1 : -1; // peek strongest polarity
@@ -174,14 +176,14 @@ public class HorizontalProfile {
     }
 
     // returns arrays of two elements: indices of the samples
-    // with min and max amplitudes in a given window
-    private int[] detectPeak(float[] samples, int center) {
+    // with min and max amplitudes in a given window;
+    // trace samples occupy [offset, offset + n) of the array
+    private int[] detectPeak(float[] samples, int offset, int n, int center) {
         // w - scan window (from both sides of center)
         int w = peakWindow;
         // max distance penalty
         float distancePenalty = 0.2f;
 
-        int n = samples.length;
         int start = Math.max(0, center - w);
         int end = Math.min(n - 1, center + w);
 
@@ -190,7 +192,7 @@ public class HorizontalProfile {
         int max = center;
         int min = center;
         for (int i = start; i <= end; i++) {
-            float amplitude = samples[i];
+            float amplitude = samples[offset + i];
             float distanceRatio = w > 1 ? Math.abs(i - center) / (float)w : 0f;
             float score = amplitude * (1 - distancePenalty * distanceRatio);
             if (score > maxScore) {
@@ -245,18 +247,21 @@ public class HorizontalProfile {
         // offset samples
         for (int i = 0; i < n; i++) {
             Trace trace = traces.get(i);
-            float[] samples = trace.getFileSamples();
-            int offset = surface[i] - level;
+            int from = trace.getSampleOffset();
+            int length = trace.numFileSamples();
+            int offset = Math.min(surface[i] - level, length);
             if (offset > 0) {
-                System.arraycopy(
-                        samples, offset,
-                        samples, 0,
-                        samples.length - offset);
-                Arrays.fill(
-                        samples,
-                        samples.length - offset,
-                        samples.length,
-                        0f);
+                trace.writeSamples(samples -> {
+                    System.arraycopy(
+                            samples, from + offset,
+                            samples, from,
+                            length - offset);
+                    Arrays.fill(
+                            samples,
+                            from + length - offset,
+                            from + length,
+                            0f);
+                });
             }
         }
         // crop air
@@ -280,7 +285,7 @@ public class HorizontalProfile {
         if (sampleRange == null) {
             int maxSamples = 0;
             for (Trace trace : Nulls.toEmpty(traceFile.getFileTraces())) {
-                maxSamples = Math.max(maxSamples, trace.getFileSamples().length);
+                maxSamples = Math.max(maxSamples, trace.numFileSamples());
             }
             sampleRange = new IndexRange(0, maxSamples);
         }
@@ -7,17 +7,19 @@ import com.ugcs.geohammer.format.meta.TraceLine;
 import com.ugcs.geohammer.format.meta.TraceMark;
 import com.ugcs.geohammer.model.LatLon;
 import com.ugcs.geohammer.model.Model;
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
 import com.ugcs.geohammer.format.gpr.Trace;
 import com.ugcs.geohammer.model.TraceKey;
 import com.ugcs.geohammer.model.element.FoundPlace;
 import com.ugcs.geohammer.model.template.FileTemplates;
+import com.ugcs.geohammer.model.undo.SampleBlock;
+import com.ugcs.geohammer.model.undo.SampleBlockStore;
 import com.ugcs.geohammer.model.undo.TempStore;
 import com.ugcs.geohammer.model.undo.TraceCodec;
 import com.ugcs.geohammer.model.undo.UndoModel;
 import com.ugcs.geohammer.service.gpr.BackgroundNoiseRemover;
 import com.ugcs.geohammer.service.gpr.DistanceCalculator;
 import com.ugcs.geohammer.service.gpr.DistanceSmoother;
-import com.ugcs.geohammer.service.gpr.EdgeFinder;
 import com.ugcs.geohammer.service.gpr.SpreadCoordinates;
 import com.ugcs.geohammer.format.meta.TraceMeta;
 import com.ugcs.geohammer.model.undo.FileSnapshot;
@@ -39,7 +41,9 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
@@ -268,8 +272,11 @@ public abstract class TraceFile extends SgyFileWithMeta {
 
     public abstract void denormalize();
 
+    // edges are found again on next access
     public void updateEdges() {
-        new EdgeFinder().execute(this, null);
+        for (Trace trace : traces) {
+            trace.invalidateEdges();
+        }
     }
 
     @Override
@@ -393,6 +400,9 @@ public abstract class TraceFile extends SgyFileWithMeta {
 
     public static class SnapshotWithTraces extends Snapshot<TraceFile> {
 
+        // samples of the traces by matrix
+        private final List<SampleBlock> blocks;
+
         private final TempStore.Entry tracesEntry;
 
         private final HorizontalProfile profile;
@@ -402,9 +412,31 @@ public abstract class TraceFile extends SgyFileWithMeta {
         public SnapshotWithTraces(TraceFile file, ByteOrder byteOrder) throws IOException {
             super(file);
 
+            SampleBlockStore blockStore = AppContext.getInstance(SampleBlockStore.class);
             TempStore tempStore = AppContext.getInstance(TempStore.class);
-            tracesEntry = tempStore.newEntry();
-            tracesEntry.write(out -> TraceCodec.write(out, file.traces, byteOrder));
+
+            List<Trace> traces = Nulls.toEmpty(file.traces);
+            Map<SampleMatrix, Integer> blockIndices = new IdentityHashMap<>();
+            int[] traceBlocks = new int[traces.size()];
+            blocks = new ArrayList<>();
+            try {
+                for (int i = 0; i < traces.size(); i++) {
+                    SampleMatrix matrix = traces.get(i).getMatrix();
+                    Integer blockIndex = blockIndices.get(matrix);
+                    if (blockIndex == null) {
+                        SampleBlock block = blockStore.acquire(matrix);
+                        blockIndex = blocks.size();
+                        blocks.add(block);
+                        blockIndices.put(matrix, blockIndex);
+                    }
+                    traceBlocks[i] = blockIndex;
+                }
+                tracesEntry = tempStore.newEntry();
+                tracesEntry.write(TraceCodec.write(traces, traceBlocks, byteOrder));
+            } catch (IOException | RuntimeException e) {
+                releaseBlocks();
+                throw e;
+            }
 
             profile = file.getGroundProfile();
             backgroundRemoved = file.isBackgroundRemoved();
@@ -412,8 +444,16 @@ public abstract class TraceFile extends SgyFileWithMeta {
 
         @Override
         public void restoreFile(Model model) throws IOException {
-            List<Trace> traces = tracesEntry.read(TraceCodec::read);
+            SampleBlockStore blockStore = AppContext.getInstance(SampleBlockStore.class);
+            List<SampleMatrix> matrices = new ArrayList<>(blocks.size());
+            for (SampleBlock block : blocks) {
+                matrices.add(blockStore.restore(block));
+            }
+            List<Trace> traces = TraceCodec.read(tracesEntry.readBuffer(), matrices);
             file.setTraces(traces);
+            for (int i = 0; i < blocks.size(); i++) {
+                blockStore.register(matrices.get(i), blocks.get(i));
+            }
 
             file.setGroundProfile(profile);
             file.setBackgroundRemoved(backgroundRemoved);
@@ -421,8 +461,16 @@ public abstract class TraceFile extends SgyFileWithMeta {
             super.restoreFile(model);
         }
 
+        private void releaseBlocks() {
+            for (SampleBlock block : blocks) {
+                block.release();
+            }
+            blocks.clear();
+        }
+
         @Override
         public void discard() {
+            releaseBlocks();
             tracesEntry.close();
         }
     }
@@ -193,12 +193,12 @@ public class CsvFile extends SgyFile {
 
             TempStore tempStore = AppContext.getInstance(TempStore.class);
             valuesEntry = tempStore.newEntry();
-            valuesEntry.write(out -> GeoDataCodec.write(out, file.getGeoData()));
+            valuesEntry.write(GeoDataCodec.write(file.getGeoData()));
         }
 
         @Override
         public void restoreFile(Model model) throws IOException {
-            List<GeoData> values = valuesEntry.read(GeoDataCodec::read);
+            List<GeoData> values = GeoDataCodec.read(valuesEntry.readBuffer());
             file.setGeoData(values);
         }
 
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.ugcs.geohammer.format.Channel;
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
 import com.ugcs.geohammer.format.gpr.Trace;
 import com.ugcs.geohammer.math.MinMaxAvg;
 
@@ -26,17 +27,22 @@ public class DztChannel extends Channel {
 		return header;
 	}
 
-	public void addTrace(Trace trace) {
-		for (float sample : trace.getFileSamples()) {
-			sampleAverage.put(sample);
-		}
-		traces.add(trace);
+	// adds traces with the precomputed statistics of their samples
+	void addTraces(List<Trace> traces, MinMaxAvg average) {
+		sampleAverage.add(average);
+		this.traces.addAll(traces);
 	}
 
 	public DztChannel copy() {
 		DztChannel copy = new DztChannel(getIndex(), header, traces.size());
-		for (Trace trace : traces) {
-			copy.traces.add(trace.copy());
+		int[] traceLengths = new int[traces.size()];
+		for (int i = 0; i < traces.size(); i++) {
+			traceLengths[i] = traces.get(i).numFileSamples();
+		}
+		List<SampleMatrix> matrices = SampleMatrix.allocate(traceLengths);
+		for (int i = 0; i < traces.size(); i++) {
+			SampleMatrix matrix = matrices.get(i / SampleMatrix.BLOCK_ROWS);
+			copy.traces.add(traces.get(i).copy(matrix, i % SampleMatrix.BLOCK_ROWS));
 		}
 		copy.sampleAverage.copyFrom(sampleAverage);
 		return copy;
@@ -50,18 +56,26 @@ public class DztChannel extends Channel {
 	public void normalize() {
 		float average = (float) sampleAverage.getAverage();
 		for (Trace trace : traces) {
-			for (int i = 0; i < trace.numSamples(); i++) {
-				trace.setSample(i, trace.getSample(i) - average);
-			}
+			int from = trace.getRangeOffset();
+			int to = from + trace.numSamples();
+			trace.writeSamples(samples -> {
+				for (int i = from; i < to; i++) {
+					samples[i] -= average;
+				}
+			});
 		}
 	}
 
 	public void denormalize() {
 		float average = (float) sampleAverage.getAverage();
 		for (Trace trace : traces) {
-			for (int i = 0; i < trace.numSamples(); i++) {
-				trace.setSample(i, trace.getSample(i) + average);
-			}
+			int from = trace.getRangeOffset();
+			int to = from + trace.numSamples();
+			trace.writeSamples(samples -> {
+				for (int i = from; i < to; i++) {
+					samples[i] += average;
+				}
+			});
 		}
 	}
 
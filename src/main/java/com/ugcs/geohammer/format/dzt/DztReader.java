@@ -5,29 +5,45 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.Files;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CancellationException;
 
+import com.ugcs.geohammer.AppContext;
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
+import com.ugcs.geohammer.format.gpr.SamplePageCache;
 import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.math.MinMaxAvg;
 import com.ugcs.geohammer.model.LatLon;
 import com.ugcs.geohammer.util.Check;
+import com.ugcs.geohammer.util.MappedBuffers;
 import com.ugcs.geohammer.util.Nulls;
+import com.ugcs.geohammer.util.RangeTasks;
 
+// Reads scans (traces of all channels) from memory-mapped
+// blocks of the data section, blocks of scans are decoded
+// in parallel into the channel matrices. Blocks are unmapped
+// once decoded, the file is not held after reading.
 public class DztReader implements Closeable {
 
-	private final SeekableByteChannel in;
+	// a scan never spans two segments
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	// number of scans decoded by a single parallel task
+	private static final int DECODE_CHUNK_SIZE = 512;
+
+	private final FileChannel in;
 
 	private final DzgFile dzg;
 
 	public DztReader(File file, DzgFile dzg) throws IOException {
 		Check.notNull(file);
 
-		this.in = Files.newByteChannel(file.toPath(), StandardOpenOption.READ);
+		this.in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 		this.dzg = dzg;
 	}
 
@@ -41,16 +57,24 @@ public class DztReader implements Closeable {
 		return readChannels(headers);
 	}
 
+	// scan size: size of a single trace with all channels
+	private static int scanSize(List<DztHeader> headers) {
+		long scanSize = 0;
+		for (DztHeader header : headers) {
+			scanSize += header.traceSize(numSamples(header));
+		}
+		if (scanSize > Integer.MAX_VALUE) {
+			throw new IllegalStateException("DZT scan is too large: " + scanSize);
+		}
+		return (int) scanSize;
+	}
+
 	private int numTraces(List<DztHeader> headers) throws IOException {
 		if (Nulls.isNullOrEmpty(headers)) {
 			return 0;
 		}
 		long dataStart = headers.getFirst().getDataStart();
-		long traceSize = 0; // scan size: size of a single trace with all channels
-		for (DztHeader header : headers) {
-			int numSamples = Math.max(0, header.rh_nsamp - 1);
-			traceSize += header.traceSize(numSamples);
-		}
+		long traceSize = scanSize(headers);
 		long fileSize = in.size();
 		long dataSize = fileSize - dataStart;
 		if (dataSize <= 0) {
@@ -79,61 +103,136 @@ public class DztReader implements Closeable {
 
 	private DztHeader readHeaderAt(long position) throws IOException {
 		ByteBuffer buffer = ByteBuffer.allocate(DztHeader.MINHEADSIZE).order(ByteOrder.LITTLE_ENDIAN);
-		in.position(position);
-		in.read(buffer);
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer, position + buffer.position()) < 0) {
+				break;
+			}
+		}
+		buffer.position(0);
 		return new DztHeader(buffer);
 	}
 
+	private List<MappedByteBuffer> mapSegments(long dataStart, int scanSize, int numTraces,
+			int scansPerSegment) throws IOException {
+		List<MappedByteBuffer> segments = new ArrayList<>();
+		try {
+			for (int from = 0; from < numTraces; from += scansPerSegment) {
+				int to = Math.min(from + scansPerSegment, numTraces);
+				long position = dataStart + (long) from * scanSize;
+				segments.add(in.map(FileChannel.MapMode.READ_ONLY, position, (long) (to - from) * scanSize));
+			}
+		} catch (IOException e) {
+			unmap(segments);
+			throw e;
+		}
+		return segments;
+	}
+
 	private List<DztChannel> readChannels(List<DztHeader> headers) throws IOException {
 		if (headers.isEmpty()) {
 			return Collections.emptyList();
 		}
 
 		int numTraces = numTraces(headers);
+		int scanSize = scanSize(headers);
+		int scansPerSegment = (int) Math.max(1, Math.min(numTraces, MAX_SEGMENT_SIZE / scanSize));
+		List<MappedByteBuffer> segments = mapSegments(headers.getFirst().getDataStart(),
+				scanSize, numTraces, scansPerSegment);
+		List<DztChannel> channels = readChannels(headers, segments, numTraces, scanSize, scansPerSegment);
+		// on failure decoding tasks may still be running,
+		// the segments are then released by the garbage collector
+		unmap(segments);
+		return channels;
+	}
+
+	private static void unmap(List<MappedByteBuffer> segments) {
+		for (MappedByteBuffer segment : segments) {
+			MappedBuffers.unmap(segment);
+		}
+	}
+
+	private List<DztChannel> readChannels(List<DztHeader> headers, List<MappedByteBuffer> segments,
+			int numTraces, int scanSize, int scansPerSegment) {
 		int numChannels = headers.size();
 
+		// decoded pages are spilled by the cache when evicted
+		SamplePageCache pageCache = AppContext.getInstance(SamplePageCache.class);
+		List<List<SampleMatrix>> channelMatrices = new ArrayList<>(numChannels);
+		for (DztHeader header : headers) {
+			int[] traceLengths = new int[numTraces];
+			Arrays.fill(traceLengths, numSamples(header));
+			List<SampleMatrix> matrices = SampleMatrix.allocate(traceLengths);
+			for (SampleMatrix matrix : matrices) {
+				matrix.setPageCache(pageCache);
+			}
+			channelMatrices.add(matrices);
+		}
+
+		// channel traces and sample statistics of each channel
+		Trace[][] traces = new Trace[numChannels][numTraces];
+		MinMaxAvg[] averages = RangeTasks.reduce(numTraces, DECODE_CHUNK_SIZE, (from, to) -> {
+			MinMaxAvg[] chunkAverages = new MinMaxAvg[numChannels];
+			for (int i = 0; i < numChannels; i++) {
+				chunkAverages[i] = new MinMaxAvg();
+			}
+			// whole scan is copied from the mapped segment in a single call
+			byte[] scan = new byte[scanSize];
+			ByteBuffer buffer = ByteBuffer.wrap(scan).order(ByteOrder.LITTLE_ENDIAN);
+			for (int traceIndex = from; traceIndex < to; traceIndex++) {
+				MappedByteBuffer segment = segments.get(traceIndex / scansPerSegment);
+				segment.get((traceIndex % scansPerSegment) * scanSize, scan);
+				buffer.position(0);
+
+				LatLon tracePosition = dzg.getLatLon(traceIndex);
+				for (int channelIndex = 0; channelIndex < numChannels; channelIndex++) {
+					DztHeader header = headers.get(channelIndex);
+					SampleMatrix matrix = channelMatrices.get(channelIndex)
+							.get(traceIndex / SampleMatrix.BLOCK_ROWS);
+					Trace trace = new Trace(null, matrix, traceIndex % SampleMatrix.BLOCK_ROWS,
+							numSamples(header), tracePosition, null);
+					MinMaxAvg average = chunkAverages[channelIndex];
+					trace.writeSamples(samples -> readSamples(header, buffer, samples,
+							trace.getSampleOffset(), average));
+					traces[channelIndex][traceIndex] = trace;
+				}
+			}
+			return chunkAverages;
+		}, DztReader::addAverages);
+
 		List<DztChannel> channels = new ArrayList<>(numChannels);
 		for (int channelIndex = 0; channelIndex < numChannels; channelIndex++) {
 			DztChannel channel = new DztChannel(channelIndex, headers.get(channelIndex), numTraces);
+			channel.addTraces(Arrays.asList(traces[channelIndex]), averages[channelIndex]);
 			channels.add(channel);
 		}
+		return channels;
+	}
 
-		in.position(headers.getFirst().getDataStart());
-
-		for (int traceIndex = 0; traceIndex < numTraces; traceIndex++) {
-			if (Thread.currentThread().isInterrupted()) {
-				throw new CancellationException();
-			}
-			LatLon tracePosition = dzg.getLatLon(traceIndex);
-			for (int channelIndex = 0; channelIndex < numChannels; channelIndex++) {
-				float[] samples = readSamples(headers.get(channelIndex));
-				Trace trace = new Trace(null, null, samples, tracePosition, null);
-				channels.get(channelIndex).addTrace(trace);
-			}
+	private static MinMaxAvg[] addAverages(MinMaxAvg[] a, MinMaxAvg[] b) {
+		for (int i = 0; i < a.length; i++) {
+			a[i].add(b[i]);
 		}
-
-		return channels;
+		return a;
 	}
 
-	private float[] readSamples(DztHeader header) throws IOException {
-		int numSamples = Math.max(0, header.rh_nsamp - 1);
-		int bufferSize = header.traceSize(numSamples);
+	private static int numSamples(DztHeader header) {
+		// first value is a trace index
+		return Math.max(0, header.rh_nsamp - 1);
+	}
 
-		ByteBuffer buffer = ByteBuffer
-				.allocate(bufferSize)
-				.order(ByteOrder.LITTLE_ENDIAN);
-		in.read(buffer);
-		buffer.position(0);
+	// reads trace samples from the scan buffer to the array
+	// starting from the offset
+	private static void readSamples(DztHeader header, ByteBuffer buffer, float[] samples, int offset,
+			MinMaxAvg average) {
+		int numSamples = numSamples(header);
 
 		SampleCodec codec = SampleCodec.forBitDepth(header.rh_bits);
 		// first value is a trace index, skip it
 		codec.read(buffer);
 
-		float[] samples = new float[numSamples];
-		for (int sampleIndex = 0; sampleIndex < samples.length; sampleIndex++) {
-			samples[sampleIndex] = codec.read(buffer);
+		codec.read(buffer, samples, offset, numSamples);
+		for (int i = 0; i < numSamples; i++) {
+			average.put(samples[offset + i]);
 		}
-
-		return samples;
 	}
 }
@@ -110,9 +110,9 @@ public class DztWriter implements Closeable {
 				.order(ByteOrder.LITTLE_ENDIAN);
 
 		codec.write(buffer, trace.getIndex());
-		for (int sampleIndex = 0; sampleIndex < numSamples; sampleIndex++) {
-			codec.write(buffer, (int) trace.getSample(sampleIndex));
-		}
+		IndexRange sampleRange = trace.getSampleRange();
+		int from = sampleRange != null ? sampleRange.from() : 0;
+		codec.write(buffer, trace.getSampleArray(), trace.getSampleOffset() + from, numSamples);
 
 		buffer.position(0);
 		out.getChannel().write(buffer);
@@ -3,6 +3,8 @@ package com.ugcs.geohammer.format.dzt;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
+import com.ugcs.geohammer.math.sample.SampleConverter;
+
 interface SampleCodec {
 
 	Map<Integer, SampleCodec> CODECS = Map.of(
@@ -13,6 +15,12 @@ interface SampleCodec {
 
 	void write(ByteBuffer buffer, int value);
 
+	// bulk read of samples in the buffer byte order
+	void read(ByteBuffer buffer, float[] samples, int offset, int length);
+
+	// bulk write of samples as integers in the buffer byte order
+	void write(ByteBuffer buffer, float[] samples, int offset, int length);
+
 	static SampleCodec forBitDepth(int bits) {
 		SampleCodec codec = CODECS.get(bits);
 		if (codec == null) {
@@ -24,14 +32,44 @@ interface SampleCodec {
 
 class Sample16Bit implements SampleCodec {
 
+	private static final int BIAS = 32767;
+
 	@Override
 	public int read(ByteBuffer buffer) {
-		return (buffer.getShort() & 0xFFFF) - 32767;
+		return (buffer.getShort() & 0xFFFF) - BIAS;
 	}
 
 	@Override
 	public void write(ByteBuffer buffer, int value) {
-		buffer.putShort((short) (value + 32767));
+		buffer.putShort((short) (value + BIAS));
+	}
+
+	@Override
+	public void read(ByteBuffer buffer, float[] samples, int offset, int length) {
+		if (!buffer.hasArray()) {
+			for (int i = 0; i < length; i++) {
+				samples[offset + i] = read(buffer);
+			}
+			return;
+		}
+		int position = buffer.position();
+		SampleConverter.getInstance().decodeInt16(buffer.array(), buffer.arrayOffset() + position,
+				buffer.order(), true, -BIAS, samples, offset, length);
+		buffer.position(position + 2 * length);
+	}
+
+	@Override
+	public void write(ByteBuffer buffer, float[] samples, int offset, int length) {
+		if (!buffer.hasArray()) {
+			for (int i = 0; i < length; i++) {
+				write(buffer, (int) samples[offset + i]);
+			}
+			return;
+		}
+		int position = buffer.position();
+		SampleConverter.getInstance().encodeInt16(samples, offset, BIAS,
+				buffer.array(), buffer.arrayOffset() + position, buffer.order(), length);
+		buffer.position(position + 2 * length);
 	}
 }
 
@@ -46,4 +84,32 @@ class Sample32Bit implements SampleCodec {
 	public void write(ByteBuffer buffer, int value) {
 		buffer.putInt(value);
 	}
+
+	@Override
+	public void read(ByteBuffer buffer, float[] samples, int offset, int length) {
+		if (!buffer.hasArray()) {
+			for (int i = 0; i < length; i++) {
+				samples[offset + i] = read(buffer);
+			}
+			return;
+		}
+		int position = buffer.position();
+		SampleConverter.getInstance().decodeInt32(buffer.array(), buffer.arrayOffset() + position,
+				buffer.order(), samples, offset, length);
+		buffer.position(position + 4 * length);
+	}
+
+	@Override
+	public void write(ByteBuffer buffer, float[] samples, int offset, int length) {
+		if (!buffer.hasArray()) {
+			for (int i = 0; i < length; i++) {
+				write(buffer, (int) samples[offset + i]);
+			}
+			return;
+		}
+		int position = buffer.position();
+		SampleConverter.getInstance().encodeInt32(samples, offset,
+				buffer.array(), buffer.arrayOffset() + position, buffer.order(), length);
+		buffer.position(position + 4 * length);
+	}
 }
@@ -6,21 +6,24 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 
 import com.github.thecoldwine.sigrun.common.BinaryHeader;
-import com.github.thecoldwine.sigrun.common.TraceHeader;
 import com.github.thecoldwine.sigrun.serialization.BinaryHeaderFormat;
 import com.github.thecoldwine.sigrun.serialization.TextHeaderReader;
 import com.github.thecoldwine.sigrun.serialization.TraceHeaderFormat;
+import com.ugcs.geohammer.AppContext;
 import com.ugcs.geohammer.format.TraceFile;
-import com.ugcs.geohammer.format.gpr.BinFile.BinTrace;
 import com.ugcs.geohammer.format.meta.MetaFile;
 import com.ugcs.geohammer.model.IndexRange;
 import com.ugcs.geohammer.model.LatLon;
@@ -31,10 +34,14 @@ import com.ugcs.geohammer.util.AuxElements;
 import com.ugcs.geohammer.util.Check;
 import com.ugcs.geohammer.util.LengthUnit;
 import com.ugcs.geohammer.util.MissingValues;
+import com.ugcs.geohammer.util.RangeTasks;
 import com.ugcs.geohammer.util.Traces;
 import com.ugcs.geohammer.format.gpr.segy.BinaryHeaderReader;
 import com.ugcs.geohammer.format.gpr.segy.SampleCodec;
+import com.ugcs.geohammer.format.gpr.segy.TC2BICodec;
 import com.ugcs.geohammer.format.gpr.segy.TraceHeaderReader;
+import com.ugcs.geohammer.format.gpr.segy.TraceHeaderView;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,7 +59,7 @@ public class GprFile extends TraceFile {
 
     private static final int SOURCE_Y_POS = 76;
 
-    private static final int NUM_SAMPLES_POS = 114;
+    static final int NUM_SAMPLES_POS = 114;
 
     private static final int LONGITUDE_POS = 182;
 
@@ -60,6 +67,9 @@ public class GprFile extends TraceFile {
 
 	private static final int MARK_BYTE_POS = 238;
 
+    // number of traces decoded by a single parallel task
+    private static final int DECODE_CHUNK_SIZE = 1024;
+
 	private static final Charset charset = StandardCharsets.UTF_8;
 
 	private static final BinaryHeaderFormat binaryHeaderFormat
@@ -88,6 +98,10 @@ public class GprFile extends TraceFile {
 
     private SampleNormalizer sampleNormalizer = new SampleNormalizer();
 
+    // mapped source of the samples loaded on demand,
+    // released when the file is closed
+    private @Nullable MappedTraceStore store;
+
 	@Override
 	public int getSampleInterval() {
 		return binaryHeader.getSampleInterval();
@@ -118,18 +132,32 @@ public class GprFile extends TraceFile {
 
 		setFile(file);
 
-		BinFile binFile = BinFile.load(file);
+		MappedTraceStore store = MappedTraceStore.open(file);
+		try {
+			open(file, store);
+		} catch (IOException | RuntimeException e) {
+			store.close();
+			throw e;
+		}
+		this.store = store;
+	}
 
-		txtHdr = binFile.getTxtHdr();
-		binHdr = binFile.getBinHdr();
+	private void open(File file, MappedTraceStore store) throws IOException {
+		txtHdr = store.getTxtHdr();
+		binHdr = store.getBinHdr();
 
-		byteOrder = binFile.getByteOrder();
+		byteOrder = store.getByteOrder();
 		binaryHeader = binaryHeaderReader.read(binHdr, byteOrder);
 
 		log.debug("Sample interval: {}", binaryHeader.getSampleInterval());
 		log.debug("Samples per data trace {}", binaryHeader.getSamplesPerDataTrace());
 
-		List<Trace> traces = readTraces(binFile);
+		SampleCodec codec = SampleCodec.create(binaryHeader.getDataSampleCode(), byteOrder);
+		// normalization applied to the samples when a trace is loaded,
+		// initialized below once the sample ranges are known
+		SampleNormalizer loadNormalizer = new SampleNormalizer();
+
+		List<Trace> traces = readTraces(store, codec, loadNormalizer);
 		// fill latlon where null
 		MissingValues.fillTracePositions(traces);
 
@@ -139,7 +167,8 @@ public class GprFile extends TraceFile {
 
 		loadMeta(traces);
 
-		sampleNormalizer.normalize(traces);
+		loadNormalizer.init(traces, i -> store.readSamples(i, codec));
+		sampleNormalizer.copyFrom(loadNormalizer);
 		setTraces(traces);
 
 		updateTraces();
@@ -151,34 +180,102 @@ public class GprFile extends TraceFile {
 
 		setUnsaved(false);
 
-		log.debug("opened '{}', load size: {}, actual size: {}", file.getName(), getTraces().size(), binFile.getTraces().size());
+		log.debug("opened '{}', load size: {}, actual size: {}", file.getName(), getTraces().size(), store.numTraces());
 	}
 
-	private List<Trace> readTraces(BinFile binFile) {
-		SampleCodec codec = SampleCodec.create(binaryHeader.getDataSampleCode(), byteOrder);
-
-		List<BinTrace> binTraces = binFile.getTraces();
-		List<Trace> traces = new ArrayList<>(binTraces.size());
-		for (BinTrace binTrace : binTraces) {
-			if (Thread.currentThread().isInterrupted()) {
-				throw new CancellationException();
+	// detaches samples of all traces from the source file and
+	// releases it, so that it can be deleted or replaced
+	public void loadSamples() {
+		Set<SampleMatrix> matrices = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Trace trace : traces) {
+			matrices.add(trace.getMatrix());
+		}
+		List<SampleMatrix> pages = new ArrayList<>(matrices);
+		// detached pages are never read from the source again,
+		// the cache spills them when evicted
+		RangeTasks.forEach(pages.size(), 1, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				pages.get(i).detach();
 			}
+		});
+		close();
+	}
+
+	// releases the source file, samples not loaded
+	// to memory cannot be read after that
+	public void close() {
+		MappedTraceStore store = this.store;
+		if (store != null) {
+			store.close();
+			this.store = null;
+		}
+	}
 
-			Trace trace = readTrace(binTrace, codec);
-			traces.add(trace);
+	private boolean isSource(File file) throws IOException {
+		MappedTraceStore store = this.store;
+		return store != null && file.exists()
+				&& Files.isSameFile(file.toPath(), store.getFile().toPath());
+	}
+
+	private List<Trace> readTraces(MappedTraceStore store, SampleCodec codec, SampleNormalizer normalizer) {
+		int numTraces = store.numTraces();
+		int[] traceLengths = new int[numTraces];
+		for (int i = 0; i < numTraces; i++) {
+			traceLengths[i] = store.numSamples(i);
+		}
+		// matrix arrays are allocated when the first trace of a block is loaded,
+		// unmodified blocks are released and reloaded by the page cache
+		List<SampleMatrix> matrices = SampleMatrix.allocate(traceLengths);
+		SamplePageCache pageCache = AppContext.getInstance(SamplePageCache.class);
+		// 16-bit integer samples are kept raw when quantization is enabled
+		boolean quantized = pageCache.isQuantized() && codec instanceof TC2BICodec;
+		for (SampleMatrix matrix : matrices) {
+			matrix.setPageCache(pageCache);
+			if (quantized) {
+				matrix.setQuantization(normalizer);
+			}
 		}
-		return traces;
+
+		// headers are decoded in parallel, samples on first access
+		Trace[] traces = new Trace[numTraces];
+		RangeTasks.forEach(numTraces, DECODE_CHUNK_SIZE, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				SampleMatrix matrix = matrices.get(i / SampleMatrix.BLOCK_ROWS);
+				traces[i] = readTrace(store, i, matrix, i % SampleMatrix.BLOCK_ROWS,
+						codec, normalizer, quantized);
+			}
+		});
+		return new ArrayList<>(Arrays.asList(traces));
 	}
 
-	private Trace readTrace(BinTrace binTrace, SampleCodec codec) {
-		byte[] binHeader = binTrace.header;
-        TraceHeader header = traceHeaderReader.read(binHeader, byteOrder);
+	private Trace readTrace(MappedTraceStore store, int traceIndex, SampleMatrix matrix, int row,
+			SampleCodec codec, SampleNormalizer normalizer, boolean quantized) {
+		byte[] binHeader = store.readHeader(traceIndex);
+        TraceHeaderView header = new TraceHeaderView(binHeader, byteOrder);
 
-        float[] values = codec.decode(binTrace.data);
         LatLon latLon = getLatLon(binHeader);
 		Instant time = getTimestamp(header);
 
-        Trace trace = new Trace(binHeader, header, values, latLon, time);
+        // samples are decoded from the mapped file on first access
+        Trace.SampleLoader loader;
+        if (quantized) {
+            loader = new Trace.RawSampleLoader() {
+                @Override
+                public float[] load() {
+                    return normalizer.normalize(store.readSamples(traceIndex, codec));
+                }
+
+                @Override
+                public short[] loadRaw() {
+                    return store.readInt16Samples(traceIndex);
+                }
+            };
+        } else {
+            loader = () -> normalizer.normalize(
+                    store.readSamples(traceIndex, codec));
+        }
+        Trace trace = new Trace(header, matrix, row,
+                store.numSamples(traceIndex), loader, latLon, time);
         if (binHeader[MARK_BYTE_POS] != 0) {
         	trace.setMarked(true);
         }
@@ -217,13 +314,13 @@ public class GprFile extends TraceFile {
         return elevation;
     }
 
-	private Instant getTimestamp(TraceHeader header) {
-		Short year = header.getYearDataRecorded();
-		Short day = header.getDayOfYear();
-		Short hours = header.getHourOfDay();
-		Short minutes = header.getMinuteOfHour();
-		Short seconds = header.getSecondOfMinute();
-		Short millis = header.getTraceWeightingFactor();
+	private Instant getTimestamp(TraceHeaderView header) {
+		short year = header.getYearDataRecorded();
+		short day = header.getDayOfYear();
+		short hours = header.getHourOfDay();
+		short minutes = header.getMinuteOfHour();
+		short seconds = header.getSecondOfMinute();
+		short millis = header.getTraceWeightingFactor();
 
 		if (!isValidTimestamp(year, day, hours, minutes, seconds, millis)) {
 			return null;
@@ -238,8 +335,8 @@ public class GprFile extends TraceFile {
 				.toInstant(ZoneOffset.UTC);
 	}
 
-	private boolean isValidTimestamp(Short year, Short day, Short hours,
-									 Short minutes, Short seconds, Short millis) {
+	private boolean isValidTimestamp(short year, short day, short hours,
+									 short minutes, short seconds, short millis) {
 		int currentYear = LocalDateTime.now().getYear();
 
 		return isInRange(year, 1, currentYear)
@@ -250,8 +347,8 @@ public class GprFile extends TraceFile {
 				&& isInRange(millis, 0, 999);
 	}
 
-	private boolean isInRange(Short value, int min, int max) {
-		return value != null && value >= min && value <= max;
+	private boolean isInRange(short value, int min, int max) {
+		return value >= min && value <= max;
 	}
 
 	private double retrieveVal(Double v1, Float v2) {
@@ -302,41 +399,47 @@ public class GprFile extends TraceFile {
 
         SampleCodec codec = SampleCodec.create(binaryHeader.getDataSampleCode(), byteOrder);
 
-		BinFile binFile = new BinFile();
-
-		binFile.setTxtHdr(txtHdr);
-		binFile.setBinHdr(binHdr);
+        // mapped source cannot be replaced, samples are read
+        // to memory and the source is released before saving over it
+        if (isSource(file)) {
+            loadSamples();
+        }
 
         Set<Integer> marks = AuxElements.getMarkIndices(getAuxElements(), range);
 
 		List<Trace> fileTraces = getTraces();
 
-		int markNumber = 1;
-        for (int i = range.from(); i < range.to(); i++) {
-			Trace trace = fileTraces.get(i);
-
-			BinTrace binTrace = new BinTrace();
-			binTrace.header = trace.getBinHeader();
-
-			// upd coordinates
-			ByteBuffer buffer = ByteBuffer.wrap(binTrace.header).order(byteOrder);
-            updateTraceBuffer(trace, buffer);
-
-			// set or clear mark
-			if (marks.contains(i)) {
-				binTrace.header[MARK_BYTE_POS] = (byte) markNumber;
-				markNumber++;
-			} else {
-				binTrace.header[MARK_BYTE_POS] = 0;
+		try (SegyWriter writer = new SegyWriter(file, codec)) {
+			writer.writeHeaders(txtHdr, binHdr);
+
+			int markNumber = 1;
+			for (int i = range.from(); i < range.to(); i++) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException();
+				}
+
+				Trace trace = fileTraces.get(i);
+				byte[] header = trace.getBinHeader();
+
+				// upd coordinates
+				ByteBuffer buffer = ByteBuffer.wrap(header).order(byteOrder);
+				updateTraceBuffer(trace, buffer);
+
+				// set or clear mark
+				if (marks.contains(i)) {
+					header[MARK_BYTE_POS] = (byte) markNumber;
+					markNumber++;
+				} else {
+					header[MARK_BYTE_POS] = 0;
+				}
+
+				IndexRange sampleRange = trace.getSampleRange();
+				int from = sampleRange != null ? sampleRange.from() : 0;
+				writer.writeTrace(header, trace.getSampleArray(),
+						trace.getSampleOffset() + from, trace.numSamples());
 			}
-
-			IndexRange sampleRange = trace.getSampleRange();
-			int from = sampleRange != null ? sampleRange.from() : 0;
-			binTrace.data = codec.encode(trace.getFileSamples(), from, trace.numSamples());
-			binFile.getTraces().add(binTrace);
+			writer.commit();
 		}
-
-		binFile.save(file);
 	}
 
     private void updateTraceBuffer(Trace trace, ByteBuffer buffer) {
@@ -0,0 +1,258 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.github.thecoldwine.sigrun.common.BinaryHeader;
+import com.github.thecoldwine.sigrun.common.TextHeader;
+import com.github.thecoldwine.sigrun.common.TraceHeader;
+import com.ugcs.geohammer.format.gpr.segy.SampleCodec;
+import com.ugcs.geohammer.util.Check;
+import com.ugcs.geohammer.util.MappedBuffers;
+
+// SEG-Y trace store backed by memory-mapped file regions.
+// Opening indexes trace positions in a single pass, trace headers
+// and samples are read from the mapped regions on request.
+// Regions are unmapped on close, reads fail after that.
+public class MappedTraceStore implements Closeable {
+
+    private static final int HEADERS_LENGTH = TextHeader.TEXT_HEADER_SIZE + BinaryHeader.BIN_HEADER_LENGTH;
+
+    // a trace never spans two segments: when the next trace does not fit
+    // into the current segment, a new segment is mapped from the trace start
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final File file;
+
+    private final byte[] txtHdr;
+
+    private final byte[] binHdr;
+
+    private final ByteOrder byteOrder;
+
+    private final int sampleSize;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private int numTraces;
+
+    // segment index of a trace
+    private int[] traceSegments = new int[INITIAL_CAPACITY];
+
+    // position of a trace header within its segment
+    private int[] traceOffsets = new int[INITIAL_CAPACITY];
+
+    private int[] traceNumSamples = new int[INITIAL_CAPACITY];
+
+    // reads hold the read lock, so that segments
+    // are never unmapped while being read
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private boolean closed;
+
+    private MappedTraceStore(File file, FileChannel channel) throws IOException {
+        this.file = file;
+
+        long fileSize = channel.size();
+        if (fileSize < HEADERS_LENGTH) {
+            throw new IOException("File is too short to contain SEG-Y headers");
+        }
+
+        MappedByteBuffer headers = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADERS_LENGTH);
+        txtHdr = new byte[TextHeader.TEXT_HEADER_SIZE];
+        headers.get(0, txtHdr);
+        binHdr = new byte[BinaryHeader.BIN_HEADER_LENGTH];
+        headers.get(TextHeader.TEXT_HEADER_SIZE, binHdr);
+        MappedBuffers.unmap(headers);
+
+        byteOrder = GprFile.binaryHeaderReader.detectByteOrder(binHdr);
+        BinaryHeader binaryHeader = GprFile.binaryHeaderReader.read(binHdr, byteOrder);
+        sampleSize = binaryHeader.getDataSampleCode().getSize();
+
+        try {
+            index(channel, fileSize);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static MappedTraceStore open(File file) throws IOException {
+        Check.notNull(file);
+
+        // mapped regions remain valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new MappedTraceStore(file, channel);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (MappedByteBuffer segment : segments) {
+                MappedBuffers.unmap(segment);
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void lockForRead() {
+        lock.readLock().lock();
+        if (closed) {
+            lock.readLock().unlock();
+            throw new IllegalStateException("Trace store is closed");
+        }
+    }
+
+    private void index(FileChannel channel, long fileSize) throws IOException {
+        MappedByteBuffer segment = null;
+        long segmentStart = 0;
+        long segmentEnd = 0;
+
+        long position = HEADERS_LENGTH;
+        while (position + TraceHeader.TRACE_HEADER_LENGTH <= fileSize) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+
+            if (segment == null || position + TraceHeader.TRACE_HEADER_LENGTH > segmentEnd) {
+                segment = map(channel, position, fileSize);
+                segmentStart = position;
+                segmentEnd = position + segment.capacity();
+            }
+
+            long headerPosition = position;
+            // samples per trace is an unsigned field
+            int numSamples = segment.getShort((int) (headerPosition - segmentStart) + GprFile.NUM_SAMPLES_POS) & 0xFFFF;
+            int dataLength = sampleSize * numSamples;
+            position += TraceHeader.TRACE_HEADER_LENGTH;
+
+            if (dataLength > 0 && position + dataLength <= fileSize) {
+                if (position + dataLength > segmentEnd) {
+                    segment = map(channel, headerPosition, fileSize);
+                    segmentStart = headerPosition;
+                    segmentEnd = headerPosition + segment.capacity();
+                }
+                addTrace(segments.size() - 1, (int) (headerPosition - segmentStart), numSamples);
+                position += dataLength;
+            }
+        }
+    }
+
+    private MappedByteBuffer map(FileChannel channel, long position, long fileSize) throws IOException {
+        long size = Math.min(MAX_SEGMENT_SIZE, fileSize - position);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        segment.order(byteOrder);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void addTrace(int segmentIndex, int offset, int numSamples) {
+        if (numTraces == traceSegments.length) {
+            int capacity = 2 * numTraces;
+            traceSegments = Arrays.copyOf(traceSegments, capacity);
+            traceOffsets = Arrays.copyOf(traceOffsets, capacity);
+            traceNumSamples = Arrays.copyOf(traceNumSamples, capacity);
+        }
+        traceSegments[numTraces] = segmentIndex;
+        traceOffsets[numTraces] = offset;
+        traceNumSamples[numTraces] = numSamples;
+        numTraces++;
+    }
+
+    // mapped file, cannot be replaced on some platforms
+    // until the store is closed
+    public File getFile() {
+        return file;
+    }
+
+    public byte[] getTxtHdr() {
+        return txtHdr;
+    }
+
+    public byte[] getBinHdr() {
+        return binHdr;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    public int numTraces() {
+        return numTraces;
+    }
+
+    public int numSamples(int traceIndex) {
+        Check.indexInBounds(traceIndex, numTraces);
+        return traceNumSamples[traceIndex];
+    }
+
+    public byte[] readHeader(int traceIndex) {
+        Check.indexInBounds(traceIndex, numTraces);
+
+        byte[] header = new byte[TraceHeader.TRACE_HEADER_LENGTH];
+        lockForRead();
+        try {
+            segments.get(traceSegments[traceIndex]).get(traceOffsets[traceIndex], header);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return header;
+    }
+
+    // safe to call concurrently: every call decodes from its own slice
+    public float[] readSamples(int traceIndex, SampleCodec codec) {
+        Check.indexInBounds(traceIndex, numTraces);
+        Check.notNull(codec);
+
+        int dataOffset = traceOffsets[traceIndex] + TraceHeader.TRACE_HEADER_LENGTH;
+        int dataLength = sampleSize * traceNumSamples[traceIndex];
+        lockForRead();
+        try {
+            MappedByteBuffer segment = segments.get(traceSegments[traceIndex]);
+            return codec.decode(segment.slice(dataOffset, dataLength));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // raw values of 2-byte integer samples
+    public short[] readInt16Samples(int traceIndex) {
+        Check.indexInBounds(traceIndex, numTraces);
+        Check.condition(sampleSize == Short.BYTES, "Samples are not 16-bit");
+
+        int dataOffset = traceOffsets[traceIndex] + TraceHeader.TRACE_HEADER_LENGTH;
+        short[] samples = new short[traceNumSamples[traceIndex]];
+        lockForRead();
+        try {
+            MappedByteBuffer segment = segments.get(traceSegments[traceIndex]);
+            segment.slice(dataOffset, Short.BYTES * samples.length)
+                    .order(byteOrder)
+                    .asShortBuffer()
+                    .get(samples);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return samples;
+    }
+}
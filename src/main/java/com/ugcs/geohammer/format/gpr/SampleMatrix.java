@@ -0,0 +1,522 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ugcs.geohammer.model.undo.TempStore;
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Samples of a block of traces stored in a single array.
+// Trace at row r occupies [r * stride, r * stride + stride) of the array,
+// traces shorter than the stride leave the tail of their row unused.
+//
+// A matrix is a page of the sample cache: when every row has a loader
+// and no row has been modified, the samples array may be released by
+// the cache and is reloaded from the row loaders on next access.
+// Writes make the page dirty: a dirty page is spilled to the temp store
+// when released and is reloaded from the spill, never from the loaders.
+// Pages are not released while being written.
+//
+// With quantization set and raw loaders in all rows, the page keeps
+// raw 16-bit values and widens them on read with the normalizer.
+// Array access widens the whole page to floats.
+public class SampleMatrix {
+
+    private static final Logger log = LoggerFactory.getLogger(SampleMatrix.class);
+
+    // deletes spills of collected pages
+    private static final Cleaner SPILL_CLEANER = Cleaner.create();
+
+    // number of rows in a matrix when a trace list is split into matrices
+    public static final int BLOCK_ROWS = 4096;
+
+    private final int numRows;
+
+    private final int stride;
+
+    // allocated on first access, released on eviction
+    private volatile float @Nullable [] samples;
+
+    // raw values of a quantized page, samples are null then
+    private volatile short @Nullable [] rawSamples;
+
+    private Trace.@Nullable SampleLoader @Nullable [] loaders;
+
+    private int numLoaders;
+
+    // samples differ from the row loaders
+    private volatile boolean dirty;
+
+    // writes in progress, written pages are not evicted
+    private int writers;
+
+    // samples of a dirty page written on eviction
+    private TempStore.@Nullable Entry spill;
+
+    // version of the samples in the spill
+    private int spillVersion;
+
+    // accessed since the last eviction attempt
+    private boolean referenced;
+
+    // writable access since the flag was cleared
+    private boolean modified;
+
+    // incremented on every write
+    private volatile int version;
+
+    private @Nullable SamplePageCache pageCache;
+
+    private @Nullable SampleNormalizer quantization;
+
+    public SampleMatrix(int numRows, int stride) {
+        Check.condition(numRows >= 0);
+        Check.condition(stride >= 0);
+        Check.condition((long) numRows * stride <= Integer.MAX_VALUE - 8, "Matrix is too large");
+
+        this.numRows = numRows;
+        this.stride = stride;
+    }
+
+    // single row matrix backed by the given array
+    public static SampleMatrix wrap(float[] samples) {
+        Check.notNull(samples);
+
+        SampleMatrix matrix = new SampleMatrix(1, samples.length);
+        matrix.samples = samples;
+        matrix.dirty = true;
+        return matrix;
+    }
+
+    // splits rows into matrices of BLOCK_ROWS rows,
+    // stride of a matrix is the max length of its rows
+    public static List<SampleMatrix> allocate(int[] rowLengths) {
+        Check.notNull(rowLengths);
+
+        List<SampleMatrix> matrices = new ArrayList<>(rowLengths.length / BLOCK_ROWS + 1);
+        for (int from = 0; from < rowLengths.length; from += BLOCK_ROWS) {
+            int to = Math.min(from + BLOCK_ROWS, rowLengths.length);
+            int stride = 0;
+            for (int i = from; i < to; i++) {
+                stride = Math.max(stride, rowLengths[i]);
+            }
+            matrices.add(new SampleMatrix(to - from, stride));
+        }
+        return matrices;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int offset(int row) {
+        Check.indexInBounds(row, numRows);
+        return row * stride;
+    }
+
+    // size of the samples array
+    public long sizeInBytes() {
+        return (long) numRows * stride * Float.BYTES;
+    }
+
+    public @Nullable SamplePageCache getPageCache() {
+        return pageCache;
+    }
+
+    // cache that accounts the samples array when it is loaded
+    public synchronized void setPageCache(@Nullable SamplePageCache pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    public @Nullable SampleNormalizer getQuantization() {
+        return quantization;
+    }
+
+    // normalizer widening raw values of the quantized pages
+    public synchronized void setQuantization(@Nullable SampleNormalizer quantization) {
+        this.quantization = quantization;
+    }
+
+    public synchronized Trace.@Nullable SampleLoader getRowLoader(int row) {
+        Check.indexInBounds(row, numRows);
+        return loaders != null ? loaders[row] : null;
+    }
+
+    // row samples are read from the loader whenever the page is loaded
+    public void setRowLoader(int row, Trace.SampleLoader loader) {
+        Check.indexInBounds(row, numRows);
+        Check.notNull(loader);
+
+        boolean widened = false;
+        boolean spilled;
+        synchronized (this) {
+            if (loaders == null) {
+                loaders = new Trace.SampleLoader[numRows];
+            }
+            if (loaders[row] == null) {
+                numLoaders++;
+            }
+            loaders[row] = loader;
+            if (rawSamples != null && !(loader instanceof Trace.RawSampleLoader)) {
+                widen();
+                widened = true;
+            }
+            // dirty pages are never reloaded from the loaders,
+            // the row is filled now whenever the page is in memory
+            float[] values = samples;
+            short[] raw = rawSamples;
+            spilled = false;
+            if (values != null) {
+                loadRow(values, row, loader);
+                version++;
+            } else if (raw != null) {
+                loadRawRow(raw, row, (Trace.RawSampleLoader) loader);
+            } else {
+                spilled = spill != null;
+            }
+        }
+        if (widened) {
+            updateCache();
+        }
+        if (spilled) {
+            write(values -> loadRow(values, row, loader));
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    // unmodified page with a loader in every row
+    public synchronized boolean isReloadable() {
+        return !dirty && numLoaders == numRows;
+    }
+
+    // rows without loaders are written by the caller,
+    // the page is not loaded
+    public void markDirty() {
+        boolean widened = false;
+        synchronized (this) {
+            dirty = true;
+            modified = true;
+            version++;
+            if (rawSamples != null) {
+                widen();
+                widened = true;
+            }
+        }
+        if (widened) {
+            updateCache();
+        }
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void clearModified() {
+        modified = false;
+    }
+
+    // changes when samples are accessed for writing
+    public int getVersion() {
+        return version;
+    }
+
+    // bytes of the loaded samples
+    long residentBytes() {
+        long length = (long) numRows * stride;
+        if (samples != null) {
+            return length * Float.BYTES;
+        }
+        if (rawSamples != null) {
+            return length * Short.BYTES;
+        }
+        return 0;
+    }
+
+    private void touch() {
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    public float getSample(int index) {
+        while (true) {
+            float[] values = samples;
+            if (values != null) {
+                touch();
+                return values[index];
+            }
+            short[] raw = rawSamples;
+            if (raw != null) {
+                touch();
+                return Check.notNull(quantization).normalize(raw[index]);
+            }
+            load();
+        }
+    }
+
+    // samples array for reading
+    public float[] getSamples() {
+        float[] values = samples;
+        if (values == null) {
+            values = loadSamples();
+        }
+        touch();
+        return values;
+    }
+
+    @FunctionalInterface
+    public interface SampleWriter<E extends Exception> {
+
+        void write(float[] samples) throws E;
+    }
+
+    // writer gets the samples array of the dirty page; the page
+    // stays in memory until the writer returns, the array
+    // must not be written after that
+    public <E extends Exception> void write(SampleWriter<E> writer) throws E {
+        Check.notNull(writer);
+
+        float[] values = beginWrite();
+        try {
+            writer.write(values);
+        } finally {
+            endWrite();
+        }
+    }
+
+    private float[] beginWrite() {
+        while (true) {
+            loadSamples();
+            synchronized (this) {
+                float[] values = samples;
+                // evicted after loading otherwise
+                if (values != null) {
+                    writers++;
+                    dirty = true;
+                    modified = true;
+                    version++;
+                    referenced = true;
+                    return values;
+                }
+            }
+        }
+    }
+
+    private synchronized void endWrite() {
+        writers--;
+    }
+
+    // reads the samples from the row loaders, the page is
+    // dirty and the loaders are not used after that
+    public void detach() {
+        write(values -> {});
+    }
+
+    // copies samples in [from, from + length) of the array
+    // without widening a quantized page
+    public void copySamples(int from, float[] dst, int dstOffset, int length) {
+        while (true) {
+            float[] values = samples;
+            if (values != null) {
+                touch();
+                System.arraycopy(values, from, dst, dstOffset, length);
+                return;
+            }
+            short[] raw = rawSamples;
+            if (raw != null) {
+                touch();
+                SampleNormalizer normalizer = Check.notNull(quantization);
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] = normalizer.normalize(raw[from + i]);
+                }
+                return;
+            }
+            load();
+        }
+    }
+
+    // samples of the row for a single pass over the traces: a clean
+    // page that is not in memory is read from the row loader and
+    // is not cached, other pages are loaded as usual
+    public float[] readRow(int row) {
+        Check.indexInBounds(row, numRows);
+
+        Trace.SampleLoader loader = null;
+        synchronized (this) {
+            if (samples == null && rawSamples == null && !dirty && loaders != null) {
+                loader = loaders[row];
+            }
+        }
+        if (loader != null) {
+            return loader.load();
+        }
+        float[] values = new float[stride];
+        copySamples(offset(row), values, 0, stride);
+        return values;
+    }
+
+    private float[] loadSamples() {
+        float[] values;
+        boolean widened = false;
+        synchronized (this) {
+            values = samples;
+            if (values == null && rawSamples != null) {
+                values = widen();
+                widened = true;
+            }
+        }
+        if (widened) {
+            updateCache();
+            return values;
+        }
+        if (values == null) {
+            load();
+            return loadSamples();
+        }
+        return values;
+    }
+
+    private void load() {
+        SamplePageCache cache;
+        synchronized (this) {
+            if (samples != null || rawSamples != null) {
+                return;
+            }
+            int length = numRows * stride;
+            if (spill != null) {
+                float[] values = new float[length];
+                try {
+                    spill.readFloats(values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                samples = values;
+            } else if (isQuantizable()) {
+                short[] raw = new short[length];
+                for (int row = 0; row < numRows; row++) {
+                    loadRawRow(raw, row, (Trace.RawSampleLoader) Check.notNull(loaders)[row]);
+                }
+                rawSamples = raw;
+            } else {
+                float[] values = new float[length];
+                if (loaders != null) {
+                    for (int row = 0; row < numRows; row++) {
+                        Trace.SampleLoader loader = loaders[row];
+                        if (loader != null) {
+                            loadRow(values, row, loader);
+                        }
+                    }
+                }
+                samples = values;
+            }
+            cache = pageCache;
+        }
+        // cache locks pages on eviction, never register
+        // while holding the page lock
+        if (cache != null) {
+            cache.add(this);
+        }
+    }
+
+    private boolean isQuantizable() {
+        if (quantization == null || dirty || loaders == null || numLoaders < numRows) {
+            return false;
+        }
+        for (Trace.SampleLoader loader : loaders) {
+            if (!(loader instanceof Trace.RawSampleLoader)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void loadRow(float[] values, int row, Trace.SampleLoader loader) {
+        float[] loaded = loader.load();
+        Check.condition(loaded.length <= stride, "Unexpected number of samples");
+        System.arraycopy(loaded, 0, values, row * stride, loaded.length);
+    }
+
+    private void loadRawRow(short[] raw, int row, Trace.RawSampleLoader loader) {
+        short[] loaded = loader.loadRaw();
+        Check.condition(loaded.length <= stride, "Unexpected number of samples");
+        System.arraycopy(loaded, 0, raw, row * stride, loaded.length);
+    }
+
+    // replaces raw values of a quantized page with floats,
+    // called with the page lock held
+    private float[] widen() {
+        short[] raw = Check.notNull(rawSamples);
+        SampleNormalizer normalizer = Check.notNull(quantization);
+        float[] values = new float[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            values[i] = normalizer.normalize(raw[i]);
+        }
+        samples = values;
+        rawSamples = null;
+        return values;
+    }
+
+    private void updateCache() {
+        SamplePageCache cache = pageCache;
+        if (cache != null) {
+            cache.update(this);
+        }
+    }
+
+    // releases the samples when the page can be reloaded
+    // and was not accessed since the previous attempt;
+    // dirty page is written to the spill first
+    synchronized boolean evict(TempStore spillStore) {
+        if (samples == null && rawSamples == null || writers > 0) {
+            return false;
+        }
+        if (!dirty && numLoaders < numRows) {
+            return false;
+        }
+        if (referenced) {
+            referenced = false;
+            return false;
+        }
+        if (dirty && (spill == null || spillVersion != version)) {
+            // dirty pages are widened on write
+            float[] values = samples;
+            if (values == null || !spill(values, spillStore)) {
+                return false;
+            }
+        }
+        samples = null;
+        rawSamples = null;
+        return true;
+    }
+
+    // called with the page lock held
+    private boolean spill(float[] values, TempStore spillStore) {
+        TempStore.Entry entry = spill;
+        if (entry == null) {
+            entry = spillStore.newEntry();
+            SPILL_CLEANER.register(this, entry::close);
+            spill = entry;
+        }
+        try {
+            entry.writeFloats(values);
+        } catch (IOException e) {
+            log.warn("Failed to spill samples, page is kept in memory", e);
+            return false;
+        }
+        spillVersion = version;
+        return true;
+    }
+}
@@ -3,8 +3,14 @@ package com.ugcs.geohammer.format.gpr;
 import java.util.List;
 import java.util.stream.IntStream;
 
+import com.ugcs.geohammer.model.IndexRange;
+import com.ugcs.geohammer.util.RangeTasks;
+
 public class SampleNormalizer {
 
+    // number of traces scanned by a single parallel task
+    private static final int INIT_CHUNK_SIZE = 256;
+
     private float avg;
 
     private float reduceFactor;
@@ -33,21 +39,95 @@ public class SampleNormalizer {
         System.out.println("AVG: " + avg +  "  DISPERSION: " + dispersion);
     }
 
+    // computes the same statistics as normalize(traces) over raw samples
+    // that are read one trace at a time and not retained;
+    // traces are scanned in parallel chunks
+    public void init(List<Trace> traces, RawSamples rawSamples) {
+        double[] sum = RangeTasks.reduce(traces.size(), INIT_CHUNK_SIZE, (fromTrace, toTrace) -> {
+            double chunkSum = 0;
+            long chunkCount = 0;
+            for (int i = fromTrace; i < toTrace; i++) {
+                float[] samples = rawSamples.get(i);
+                int from = sampleFrom(traces.get(i), samples);
+                int to = sampleTo(traces.get(i), samples);
+                // only bottom half because top has big distortion
+                for (int j = from + (to - from) / 2; j < to; j++) {
+                    chunkSum += samples[j];
+                    chunkCount++;
+                }
+            }
+            return new double[] {chunkSum, chunkCount};
+        }, SampleNormalizer::addSums);
+        avg = (float) (sum[0] / sum[1]);
+
+        // dispersion around avg
+        float finalAvg = avg;
+        double[] deviationSum = RangeTasks.reduce(traces.size(), INIT_CHUNK_SIZE, (fromTrace, toTrace) -> {
+            double chunkSum = 0;
+            long chunkCount = 0;
+            for (int i = fromTrace; i < toTrace; i++) {
+                float[] samples = rawSamples.get(i);
+                int from = sampleFrom(traces.get(i), samples);
+                int to = sampleTo(traces.get(i), samples);
+                for (int j = from; j < to; j++) {
+                    chunkSum += Math.abs(samples[j] - finalAvg);
+                    chunkCount++;
+                }
+            }
+            return new double[] {chunkSum, chunkCount};
+        }, SampleNormalizer::addSums);
+        float dispersion = (float) (deviationSum[0] / deviationSum[1]);
+
+        reduceFactor = dispersion / 500;
+    }
+
+    // {sum, count} pairs
+    private static double[] addSums(double[] a, double[] b) {
+        return new double[] {a[0] + b[0], a[1] + b[1]};
+    }
+
+    private static int sampleFrom(Trace trace, float[] samples) {
+        IndexRange range = trace.getSampleRange();
+        return range != null ? Math.clamp(range.from(), 0, samples.length) : 0;
+    }
+
+    private static int sampleTo(Trace trace, float[] samples) {
+        IndexRange range = trace.getSampleRange();
+        return range != null ? Math.clamp(range.to(), 0, samples.length) : samples.length;
+    }
+
+    public float normalize(float sample) {
+        return (sample - avg) / reduceFactor;
+    }
+
+    public float[] normalize(float[] samples) {
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = normalize(samples[i]);
+        }
+        return samples;
+    }
+
     private void normalize(List<Trace> traces, float avg, float reduceFactor) {
         for (Trace trace : traces) {
-            for (int i = 0; i < trace.numSamples(); i++ ) {
-                float normalized = (trace.getSample(i) - avg) / reduceFactor;
-                trace.setSample(i, normalized);
-            }
+            int from = trace.getRangeOffset();
+            int to = from + trace.numSamples();
+            trace.writeSamples(samples -> {
+                for (int i = from; i < to; i++) {
+                    samples[i] = (samples[i] - avg) / reduceFactor;
+                }
+            });
         }
     }
 
     public void back(List<Trace> traces) {
         for (Trace trace : traces) {
-            for (int i = 0; i < trace.numSamples(); i++ ) {
-                float restored = trace.getSample(i) * reduceFactor + avg;
-                trace.setSample(i, restored);
-            }
+            int from = trace.getRangeOffset();
+            int to = from + trace.numSamples();
+            trace.writeSamples(samples -> {
+                for (int i = from; i < to; i++) {
+                    samples[i] = samples[i] * reduceFactor + avg;
+                }
+            });
         }
     }
 
@@ -55,4 +135,10 @@ public class SampleNormalizer {
         this.avg = sampleNormalizer.avg;
         this.reduceFactor = sampleNormalizer.reduceFactor;
     }
+
+    @FunctionalInterface
+    public interface RawSamples {
+
+        float[] get(int traceIndex);
+    }
 }
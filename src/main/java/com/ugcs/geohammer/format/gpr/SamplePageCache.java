@@ -0,0 +1,119 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.ugcs.geohammer.model.undo.TempStore;
+import com.ugcs.geohammer.util.Check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Bounds the memory of loaded sample matrices across all open files.
+// Loaded pages are kept in a queue in the load order; when the total
+// size exceeds the budget, pages are evicted from the queue head
+// with a second chance for the pages accessed since the last pass,
+// which approximates LRU without any bookkeeping on access.
+// Modified pages are spilled to the temp store on eviction,
+// pages being written stay resident until the write completes.
+@Component
+public class SamplePageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SamplePageCache.class);
+
+    private final long maxBytes;
+
+    // keep raw 16-bit values of integer sources
+    private final boolean quantized;
+
+    // spills of the modified pages
+    private final TempStore spillStore;
+
+    // pages are weakly referenced to let closed files be collected
+    private final Deque<WeakReference<SampleMatrix>> pages = new ArrayDeque<>();
+
+    private long residentBytes;
+
+    public SamplePageCache(
+            @Value("${samples.cache.maxBytes:0}") long maxBytes,
+            @Value("${samples.quantized:false}") boolean quantized,
+            TempStore spillStore) {
+        Check.notNull(spillStore);
+
+        // half of the heap by default
+        this.maxBytes = maxBytes > 0
+                ? maxBytes
+                : Runtime.getRuntime().maxMemory() / 2;
+        this.quantized = quantized;
+        this.spillStore = spillStore;
+        log.info("Sample cache size: {} MB, quantized: {}", this.maxBytes >> 20, quantized);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    void add(SampleMatrix matrix) {
+        Check.notNull(matrix);
+
+        synchronized (this) {
+            pages.addLast(new WeakReference<>(matrix));
+            trim(matrix);
+        }
+    }
+
+    // size of the loaded page has changed
+    void update(SampleMatrix matrix) {
+        Check.notNull(matrix);
+
+        synchronized (this) {
+            trim(matrix);
+        }
+    }
+
+    private void trim(SampleMatrix keep) {
+        // page sizes change on widening, sum up the actual sizes
+        // and drop collected pages
+        long resident = 0;
+        Iterator<WeakReference<SampleMatrix>> it = pages.iterator();
+        while (it.hasNext()) {
+            SampleMatrix matrix = it.next().get();
+            long bytes = matrix != null ? matrix.residentBytes() : 0;
+            if (bytes == 0) {
+                it.remove();
+            } else {
+                resident += bytes;
+            }
+        }
+        // two passes over the queue clear all reference bits
+        int limit = 2 * pages.size();
+        for (int i = 0; i < limit && resident > maxBytes; i++) {
+            WeakReference<SampleMatrix> page = pages.pollFirst();
+            if (page == null) {
+                break;
+            }
+            SampleMatrix matrix = page.get();
+            if (matrix == null) {
+                continue;
+            }
+            long bytes = matrix.residentBytes();
+            if (matrix != keep && matrix.evict(spillStore)) {
+                resident -= bytes;
+            } else {
+                pages.addLast(page);
+            }
+        }
+        residentBytes = resident;
+    }
+}
@@ -0,0 +1,119 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.ugcs.geohammer.format.gpr.segy.SampleCodec;
+import com.ugcs.geohammer.util.Check;
+
+// Streams SEG-Y headers and traces to a temporary file next to the target.
+// Traces are encoded into a reusable direct buffer that is written
+// to the channel when full. The target file is replaced by the
+// temporary file on commit, closing without a commit discards it.
+public class SegyWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 4 << 20;
+
+    private final File file;
+
+    private final File tempFile;
+
+    private final SampleCodec codec;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // encoded samples of a trace
+    private byte[] data = new byte[0];
+
+    private boolean committed;
+
+    public SegyWriter(File file, SampleCodec codec) throws IOException {
+        Check.notNull(file);
+        Check.notNull(codec);
+
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.codec = codec;
+        this.channel = FileChannel.open(tempFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    public void writeHeaders(byte[] txtHdr, byte[] binHdr) throws IOException {
+        put(txtHdr, 0, txtHdr.length);
+        put(binHdr, 0, binHdr.length);
+    }
+
+    public void writeTrace(byte[] header, float[] samples, int offset, int length) throws IOException {
+        int dataLength = length * codec.sampleSize();
+        if (data.length < dataLength) {
+            data = new byte[dataLength];
+        }
+        codec.encode(samples, offset, length, data, 0);
+
+        put(header, 0, header.length);
+        put(data, 0, dataLength);
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+        if (buffer.remaining() < length) {
+            // larger than the buffer
+            write(ByteBuffer.wrap(bytes, offset, length));
+        } else {
+            buffer.put(bytes, offset, length);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    public void commit() throws IOException {
+        Check.condition(!committed, "Writer is already committed");
+
+        flush();
+        channel.force(false);
+        channel.close();
+        try {
+            Files.move(tempFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+}
@@ -1,34 +1,35 @@
 package com.ugcs.geohammer.format.gpr;
 
 import java.time.Instant;
-import java.util.Arrays;
 
-import com.github.thecoldwine.sigrun.common.TraceHeader;
+import com.ugcs.geohammer.format.gpr.segy.TraceHeaderView;
 import com.ugcs.geohammer.model.IndexRange;
 import com.ugcs.geohammer.model.LatLon;
+import com.ugcs.geohammer.util.Check;
 import org.jspecify.annotations.Nullable;
 
 public class Trace {
 
-    private final @Nullable byte[] binHeader;
-
-    private final @Nullable TraceHeader header;
+    // view over the raw header bytes, null for non SEG-Y traces
+    private final @Nullable TraceHeaderView header;
 
     private int index;
 
     private @Nullable IndexRange sampleRange;
 
-    private float[] samples;
+    // samples of the trace are a row of the matrix
+    private final SampleMatrix matrix;
+
+    private final int row;
+
+    // offset of the row in the matrix arrays
+    private final int offset;
 
-    /*
-     * 0
-     * 1 - 0 ('+' -> '-')
-     * 2 - 0 ('-' -> '+')
-     * 3 - min
-     * 4 - max
-     *
-     */
-    private byte[] edges;
+    private final int length;
+
+    // found on first access to the samples in the range,
+    // reset when samples or the range change
+    private volatile @Nullable TraceEdges edges;
 
     private LatLon latLon;
 
@@ -47,40 +48,84 @@ public class Trace {
     
     private int maxindex;
 
-    public Trace(byte @Nullable [] binHeader, @Nullable TraceHeader header,
+    public Trace(@Nullable TraceHeaderView header,
 				 float[] samples, LatLon latLon, Instant dateTime) {
-        this.binHeader = binHeader;
+        this(header, SampleMatrix.wrap(samples), 0, samples.length, latLon, dateTime);
+    }
+
+    public Trace(@Nullable TraceHeaderView header,
+                 SampleMatrix matrix, int row, int numSamples, LatLon latLon, Instant dateTime) {
+        this(header, matrix, row, numSamples, latLon, dateTime, null);
+
+        // samples are written by the caller
+        matrix.markDirty();
+    }
+
+    // samples are loaded to the matrix row on first access
+    // and reloaded when the matrix is evicted from the cache
+    public Trace(@Nullable TraceHeaderView header,
+                 SampleMatrix matrix, int row, int numSamples, SampleLoader sampleLoader,
+                 LatLon latLon, Instant dateTime) {
+        this(header, matrix, row, numSamples, latLon, dateTime,
+                Check.notNull(sampleLoader));
+    }
+
+    private Trace(@Nullable TraceHeaderView header,
+                  SampleMatrix matrix, int row, int numSamples, LatLon latLon, Instant dateTime,
+                  @Nullable SampleLoader sampleLoader) {
+        Check.notNull(matrix);
+        Check.condition(numSamples >= 0 && numSamples <= matrix.getStride(),
+                "Number of samples exceeds matrix stride");
+
         this.header = header;
 
-        this.samples = samples;
-        this.edges = new byte[samples.length];
+        this.matrix = matrix;
+        this.row = row;
+        this.offset = matrix.offset(row);
+        this.length = numSamples;
+        if (sampleLoader != null) {
+            matrix.setRowLoader(row, sampleLoader);
+        }
 
         this.latLonOrigin = latLon;
         this.latLon = latLon;
-		this.dateTime = dateTime;
+        this.dateTime = dateTime;
     }
 
-    public Trace copy() {
-        Trace copy = new Trace(
-                binHeader,
-                header,
-                Arrays.copyOf(samples, samples.length),
-                latLon,
-				dateTime);
+    // copies trace to the row of the matrix; traces of a file are
+    // copied to shared block matrices, see Traces.copy
+    public Trace copy(SampleMatrix matrix, int row) {
+        SampleLoader loader = this.matrix.isDirty()
+                ? null
+                : this.matrix.getRowLoader(this.row);
+        if (matrix.getPageCache() == null) {
+            matrix.setPageCache(this.matrix.getPageCache());
+            matrix.setQuantization(this.matrix.getQuantization());
+        }
+        Trace copy;
+        if (loader != null) {
+            // unmodified samples, copy loads its own samples
+            copy = new Trace(header, matrix, row, length, loader, latLon, dateTime);
+        } else {
+            copy = new Trace(header, matrix, row, length, latLon, dateTime);
+            int copyOffset = copy.offset;
+            matrix.write(samples -> this.matrix.copySamples(offset, samples, copyOffset, length));
+        }
         copy.index = index;
         copy.sampleRange = sampleRange;
         copy.prevDist = prevDist;
         copy.maxindex = maxindex;
         copy.receiverAltitude = receiverAltitude;
         copy.marked = marked;
+        copy.edges = edges;
         return copy;
     }
 
-    public @Nullable byte[] getBinHeader() {
-        return binHeader;
+    public byte @Nullable [] getBinHeader() {
+        return header != null ? header.getBytes() : null;
     }
 
-    public @Nullable TraceHeader getHeader() {
+    public @Nullable TraceHeaderView getHeader() {
         return header;
     }
 
@@ -98,6 +143,7 @@ public class Trace {
 
     public void setSampleRange(IndexRange sampleRange) {
         this.sampleRange = sampleRange;
+        invalidateEdges();
     }
 
     private int localToGlobal(int index) {
@@ -117,7 +163,7 @@ public class Trace {
     }
 
     public int numSamples() {
-        int totalSamples = samples.length;
+        int totalSamples = length;
         if (sampleRange == null) {
             return totalSamples;
         }
@@ -126,23 +172,74 @@ public class Trace {
     }
 
     public float getSample(int index) {
-        return samples[localToGlobal(index)];
+        return matrix.getSample(offset + localToGlobal(index));
     }
 
+    // every call is a write to the matrix,
+    // loops write through writeSamples() instead
     public void setSample(int index, float value) {
-        samples[localToGlobal(index)] = value;
+        int i = offset + localToGlobal(index);
+        matrix.write(samples -> samples[i] = value);
+        if (edges != null) {
+            edges = null;
+        }
+    }
+
+    public int numFileSamples() {
+        return length;
     }
 
-    public float[] getFileSamples() {
-        return samples;
+    // matrix array holding the trace samples at
+    // [getSampleOffset(), getSampleOffset() + numFileSamples());
+    // the array is for reading only, it may be released and
+    // reloaded by the sample cache; quantized matrix is widened
+    public float[] getSampleArray() {
+        return matrix.getSamples();
+    }
+
+    // writer modifies the trace samples in the matrix array, see
+    // getSampleOffset() and getRangeOffset(); the array is kept
+    // in memory only until the writer returns
+    public <E extends Exception> void writeSamples(SampleMatrix.SampleWriter<E> writer) throws E {
+        try {
+            matrix.write(writer);
+        } finally {
+            invalidateEdges();
+        }
+    }
+
+    public int getSampleOffset() {
+        return offset;
+    }
+
+    // offset of the first sample in range in the matrix arrays,
+    // sample i of the range is at getRangeOffset() + i
+    public int getRangeOffset() {
+        return offset + localToGlobal(0);
+    }
+
+    public SampleMatrix getMatrix() {
+        return matrix;
+    }
+
+    public int getRow() {
+        return row;
     }
 
     public byte getEdge(int index) {
-        return edges[localToGlobal(index)];
+        TraceEdges values = edges;
+        if (values == null) {
+            int n = numSamples();
+            float[] samples = new float[n];
+            matrix.copySamples(offset + localToGlobal(0), samples, 0, n);
+            values = TraceEdges.find(samples, 0, n);
+            edges = values;
+        }
+        return values.get(index);
     }
 
-    public void setEdge(int index, byte value) {
-        edges[localToGlobal(index)] = value;
+    public void invalidateEdges() {
+        edges = null;
     }
 
     public LatLon getLatLon() {
@@ -198,4 +295,17 @@ public class Trace {
     public void setMaxIndex(int maxIndex) {
         this.maxindex = localToGlobal(maxIndex);
     }
+
+    @FunctionalInterface
+    public interface SampleLoader {
+
+        float[] load();
+    }
+
+    // loader of 16-bit integer samples, load() returns
+    // the normalized values of loadRaw()
+    public interface RawSampleLoader extends SampleLoader {
+
+        short[] loadRaw();
+    }
 }
@@ -0,0 +1,74 @@
+package com.ugcs.geohammer.format.gpr;
+
+import com.ugcs.geohammer.util.Check;
+
+// Edge classes of trace samples packed into 3 bits per sample,
+// 21 samples in a long.
+//
+// 0
+// 1 - 0 ('+' -> '-')
+// 2 - 0 ('-' -> '+')
+// 3 - min
+// 4 - max
+public final class TraceEdges {
+
+    private static final int BITS = 3;
+
+    private static final int PER_WORD = Long.SIZE / BITS;
+
+    private static final long MASK = (1L << BITS) - 1;
+
+    private final long[] words;
+
+    private final int length;
+
+    private TraceEdges(int length) {
+        this.words = new long[(length + PER_WORD - 1) / PER_WORD];
+        this.length = length;
+    }
+
+    // classifies samples in [offset, offset + length) of the array
+    public static TraceEdges find(float[] samples, int offset, int length) {
+        Check.notNull(samples);
+        Check.condition(length >= 0);
+
+        TraceEdges edges = new TraceEdges(length);
+        int mxind = 0;
+        for (int s = 1; s < length; s++) {
+            float sample = samples[offset + s];
+            int s1 = (int) Math.signum(samples[offset + s - 1]);
+            int s2 = (int) Math.signum(sample);
+
+            if (s1 != s2) {
+                edges.set(s, s1 > s2 ? 1 : 2);
+                edges.set(mxind, samples[offset + mxind] < 0 ? 3 : 4);
+                mxind = s;
+            }
+
+            if (Math.abs(samples[offset + mxind]) < Math.abs(sample)) {
+                mxind = s;
+            }
+        }
+        return edges;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // 0 outside of the classified range
+    public byte get(int index) {
+        if (index < 0 || index >= length) {
+            return 0;
+        }
+        int word = index / PER_WORD;
+        int shift = (index - word * PER_WORD) * BITS;
+        return (byte) ((words[word] >>> shift) & MASK);
+    }
+
+    private void set(int index, int value) {
+        int word = index / PER_WORD;
+        int shift = (index - word * PER_WORD) * BITS;
+        words[word] = words[word] & ~(MASK << shift) | (long) value << shift;
+    }
+}
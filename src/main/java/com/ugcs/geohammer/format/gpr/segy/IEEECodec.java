@@ -1,8 +1,8 @@
 package com.ugcs.geohammer.format.gpr.segy;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
+
+import com.ugcs.geohammer.math.sample.SampleConverter;
 
 public class IEEECodec implements SampleCodec {
 
@@ -10,6 +10,8 @@ public class IEEECodec implements SampleCodec {
 
     private final ByteOrder order;
 
+    private final SampleConverter converter = SampleConverter.getInstance();
+
     public IEEECodec(ByteOrder order) {
         this.order = order;
     }
@@ -17,19 +19,17 @@ public class IEEECodec implements SampleCodec {
     @Override
     public float[] decode(byte[] bytes, int offset, int length) {
         float[] result = new float[length / 4];
-        FloatBuffer buffer = ByteBuffer.wrap(bytes, offset, length).order(order).asFloatBuffer();
-        for (int i = 0; i < result.length; i++) {
-            result[i] = buffer.get() * SCALE;
-        }
+        converter.decodeFloat32(bytes, offset, order, SCALE, result, 0, result.length);
         return result;
     }
 
     @Override
-    public byte[] encode(float[] samples, int offset, int length) {
-        ByteBuffer buffer = ByteBuffer.allocate(length * 4).order(order);
-        for (int i = 0; i < length; i++) {
-            buffer.putFloat(samples[offset + i] / SCALE);
-        }
-        return buffer.array();
+    public int sampleSize() {
+        return 4;
+    }
+
+    @Override
+    public void encode(float[] samples, int offset, int length, byte[] bytes, int bytesOffset) {
+        converter.encodeFloat32(samples, offset, SCALE, bytes, bytesOffset, order, length);
     }
 }
@@ -2,6 +2,7 @@ package com.ugcs.geohammer.format.gpr.segy;
 
 import com.github.thecoldwine.sigrun.common.DataSample;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 public interface SampleCodec {
@@ -17,13 +18,36 @@ public interface SampleCodec {
         };
     }
 
+    // decodes remaining bytes of the buffer, buffer byte order is ignored;
+    // heap buffers are decoded in place, others are copied first
+    default float[] decode(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.limit());
+            return decode(buffer.array(), offset, length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return decode(bytes, 0, length);
+    }
+
     float[] decode(byte[] bytes, int offset, int length);
 
     default float[] decode(byte[] bytes) {
         return decode(bytes, 0, bytes.length);
     }
 
-    byte[] encode(float[] samples, int offset, int length);
+    // number of bytes of an encoded sample
+    int sampleSize();
+
+    void encode(float[] samples, int offset, int length, byte[] bytes, int bytesOffset);
+
+    default byte[] encode(float[] samples, int offset, int length) {
+        byte[] bytes = new byte[length * sampleSize()];
+        encode(samples, offset, length, bytes, 0);
+        return bytes;
+    }
 
     default byte[] encode(float[] samples) {
         return encode(samples, 0, samples.length);
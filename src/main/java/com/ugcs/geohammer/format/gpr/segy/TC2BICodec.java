@@ -1,13 +1,16 @@
 package com.ugcs.geohammer.format.gpr.segy;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import com.ugcs.geohammer.math.sample.SampleConverter;
+
 // 2-byte two's complement integer samples
 public class TC2BICodec implements SampleCodec {
 
     private final ByteOrder order;
 
+    private final SampleConverter converter = SampleConverter.getInstance();
+
     public TC2BICodec(ByteOrder order) {
         this.order = order;
     }
@@ -15,19 +18,17 @@ public class TC2BICodec implements SampleCodec {
     @Override
     public float[] decode(byte[] bytes, int offset, int length) {
         float[] result = new float[length / 2];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length).order(order);
-        for (int i = 0; i < result.length; i++) {
-            result[i] = buffer.getShort();
-        }
+        converter.decodeInt16(bytes, offset, order, false, 0, result, 0, result.length);
         return result;
     }
 
     @Override
-    public byte[] encode(float[] samples, int offset, int length) {
-        ByteBuffer buffer = ByteBuffer.allocate(length * 2).order(order);
-        for (int i = 0; i < length; i++) {
-            buffer.putShort((short) samples[offset + i]);
-        }
-        return buffer.array();
+    public int sampleSize() {
+        return 2;
+    }
+
+    @Override
+    public void encode(float[] samples, int offset, int length, byte[] bytes, int bytesOffset) {
+        converter.encodeInt16(samples, offset, 0, bytes, bytesOffset, order, length);
     }
 }
@@ -1,13 +1,16 @@
 package com.ugcs.geohammer.format.gpr.segy;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import com.ugcs.geohammer.math.sample.SampleConverter;
+
 // 4-byte two's complement integer samples
 public class TC4BICodec implements SampleCodec {
 
     private final ByteOrder order;
 
+    private final SampleConverter converter = SampleConverter.getInstance();
+
     public TC4BICodec(ByteOrder order) {
         this.order = order;
     }
@@ -15,21 +18,20 @@ public class TC4BICodec implements SampleCodec {
     @Override
     public float[] decode(byte[] bytes, int offset, int length) {
         float[] result = new float[length / 4];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length).order(order);
         // first sample is skipped by the source format
-        buffer.getInt();
-        for (int i = 1; i < result.length; i++) {
-            result[i] = buffer.getInt();
+        if (result.length > 1) {
+            converter.decodeInt32(bytes, offset + 4, order, result, 1, result.length - 1);
         }
         return result;
     }
 
     @Override
-    public byte[] encode(float[] samples, int offset, int length) {
-        ByteBuffer buffer = ByteBuffer.allocate(length * 4).order(order);
-        for (int i = 0; i < length; i++) {
-            buffer.putInt((int) samples[offset + i]);
-        }
-        return buffer.array();
+    public int sampleSize() {
+        return 4;
+    }
+
+    @Override
+    public void encode(float[] samples, int offset, int length, byte[] bytes, int bytesOffset) {
+        converter.encodeInt32(samples, offset, bytes, bytesOffset, order, length);
     }
 }
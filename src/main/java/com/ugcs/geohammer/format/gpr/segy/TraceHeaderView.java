@@ -0,0 +1,102 @@
+package com.ugcs.geohammer.format.gpr.segy;
+
+import java.nio.ByteOrder;
+
+import com.github.thecoldwine.sigrun.common.TraceHeader;
+import com.ugcs.geohammer.util.Check;
+
+// Reads trace header fields on demand from the raw header bytes.
+// Field positions follow the SEG-Y rev 1 trace header layout;
+// the full sigrun header is built only when requested.
+public final class TraceHeaderView {
+
+    private static final int DELAY_RECORDING_TIME_POS = 108;
+
+    private static final int NUMBER_OF_SAMPLES_POS = 114;
+
+    private static final int SAMPLE_INTERVAL_POS = 116;
+
+    private static final int YEAR_POS = 156;
+
+    private static final int DAY_OF_YEAR_POS = 158;
+
+    private static final int HOUR_OF_DAY_POS = 160;
+
+    private static final int MINUTE_OF_HOUR_POS = 162;
+
+    private static final int SECOND_OF_MINUTE_POS = 164;
+
+    private static final int TRACE_WEIGHTING_FACTOR_POS = 168;
+
+    private final byte[] bytes;
+
+    private final boolean bigEndian;
+
+    public TraceHeaderView(byte[] bytes, ByteOrder order) {
+        Check.notNull(bytes);
+        Check.notNull(order);
+        Check.condition(bytes.length >= TraceHeader.TRACE_HEADER_LENGTH,
+                "Trace header is too short");
+
+        this.bytes = bytes;
+        this.bigEndian = order == ByteOrder.BIG_ENDIAN;
+    }
+
+    // raw header bytes, changes are visible through the view
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public ByteOrder getByteOrder() {
+        return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    private short getShort(int pos) {
+        int b0 = bytes[pos] & 0xFF;
+        int b1 = bytes[pos + 1] & 0xFF;
+        return (short) (bigEndian ? b0 << 8 | b1 : b1 << 8 | b0);
+    }
+
+    public short getDelayRecordingTime() {
+        return getShort(DELAY_RECORDING_TIME_POS);
+    }
+
+    public short getNumberOfSamples() {
+        return getShort(NUMBER_OF_SAMPLES_POS);
+    }
+
+    public short getSampleIntervalInMcs() {
+        return getShort(SAMPLE_INTERVAL_POS);
+    }
+
+    public short getYearDataRecorded() {
+        return getShort(YEAR_POS);
+    }
+
+    public short getDayOfYear() {
+        return getShort(DAY_OF_YEAR_POS);
+    }
+
+    public short getHourOfDay() {
+        return getShort(HOUR_OF_DAY_POS);
+    }
+
+    public short getMinuteOfHour() {
+        return getShort(MINUTE_OF_HOUR_POS);
+    }
+
+    public short getSecondOfMinute() {
+        return getShort(SECOND_OF_MINUTE_POS);
+    }
+
+    public short getTraceWeightingFactor() {
+        return getShort(TRACE_WEIGHTING_FACTOR_POS);
+    }
+
+    // parses all fields of the header
+    public TraceHeader toTraceHeader(TraceHeaderReader reader) {
+        Check.notNull(reader);
+
+        return reader.read(bytes, getByteOrder());
+    }
+}
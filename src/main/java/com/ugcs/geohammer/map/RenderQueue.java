@@ -82,6 +82,17 @@ public abstract class RenderQueue {
 
     public abstract void draw(BufferedImage image, MapField field);
 
+    // a newer render is submitted
+    protected boolean hasPending() {
+        return !executor.getQueue().isEmpty();
+    }
+
+    // shows an intermediate image of the render in progress
+    protected void publish(BufferedImage image, MapField field) {
+        lastFrame.set(new Frame(image, field));
+        onReady();
+    }
+
     public void onReady() {
         log.debug("Ready");
     }
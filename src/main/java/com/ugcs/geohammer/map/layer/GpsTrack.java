@@ -5,13 +5,17 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 
 import com.ugcs.geohammer.map.RenderQueue;
 import com.ugcs.geohammer.model.ActivationPolicy;
+import com.ugcs.geohammer.model.LatLon;
 import com.ugcs.geohammer.model.MapField;
 import com.ugcs.geohammer.model.ToolNode;
 import com.ugcs.geohammer.view.ResourceImageHolder;
@@ -21,10 +25,10 @@ import com.ugcs.geohammer.model.event.FileClosedEvent;
 import com.ugcs.geohammer.format.GeoData;
 import com.ugcs.geohammer.model.event.FileOpenedEvent;
 import com.ugcs.geohammer.model.event.FileSelectedEvent;
+import com.ugcs.geohammer.model.event.FileUpdatedEvent;
 import com.ugcs.geohammer.model.event.WhatChanged;
 import com.ugcs.geohammer.math.DouglasPeucker;
 import com.ugcs.geohammer.model.IndexRange;
-import javafx.geometry.Point2D;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
@@ -41,9 +45,72 @@ public class GpsTrack extends BaseLayer {
 	// approximation threshold in pixels
 	private static final double APPROXIMATION_THRESHOLD = 1.5;
 
+	private static final int MAX_LEVEL = (int) MapField.MAX_ZOOM;
+
 	private final Model model;
 	private final RenderQueue q;
 
+	// simplified tracks of files, built by the render thread
+	// and dropped when traces change; guarded by itself
+	private final Map<SgyFile, FileTrack> tracks = new IdentityHashMap<>();
+
+	// incremented when tracks are dropped, guarded by tracks
+	private int tracksVersion;
+
+	// track of a file in world coordinates with lines simplified
+	// per zoom level; valid while geodata and lines of the file
+	// are the same
+	private record FileTrack(
+			List<GeoData> geoData,
+			int numTraces,
+			NavigableMap<Integer, IndexRange> lineRanges,
+			Map<Integer, LineTrack> lines) {
+
+		boolean matches(SgyFile file) {
+			return geoData == file.getGeoData()
+					&& numTraces == geoData.size()
+					&& lineRanges == file.getLineRanges();
+		}
+	}
+
+	private static final class LineTrack {
+
+		private final double[] worldXs;
+
+		private final double[] worldYs;
+
+		// polylines by zoom level, computed on first use
+		private final Polyline[] levels = new Polyline[MAX_LEVEL + 1];
+
+		LineTrack(double[] worldXs, double[] worldYs) {
+			this.worldXs = worldXs;
+			this.worldYs = worldYs;
+		}
+
+		// vertices are within the pixel threshold from the line
+		// at any zoom up to the level
+		Polyline getPolyline(int level) {
+			Polyline polyline = levels[level];
+			if (polyline == null) {
+				double threshold = APPROXIMATION_THRESHOLD / Math.pow(2, level);
+				int[] selected = DouglasPeucker.approximatePolyline(worldXs, worldYs,
+						worldXs.length, threshold, 2);
+				double[] xs = new double[selected.length];
+				double[] ys = new double[selected.length];
+				for (int i = 0; i < selected.length; i++) {
+					xs[i] = worldXs[selected[i]];
+					ys[i] = worldYs[selected[i]];
+				}
+				polyline = new Polyline(xs, ys);
+				levels[level] = polyline;
+			}
+			return polyline;
+		}
+	}
+
+	private record Polyline(double[] xs, double[] ys) {
+	}
+
 	public GpsTrack(Model model) {
 		this.model = model;
 		this.q = new RenderQueue(model) {
@@ -100,7 +167,61 @@ public class GpsTrack extends BaseLayer {
 		}
 	}
 
+	private FileTrack getTrack(SgyFile file) {
+		int version;
+		synchronized (tracks) {
+			FileTrack track = tracks.get(file);
+			if (track != null && track.matches(file)) {
+				return track;
+			}
+			version = tracksVersion;
+		}
+		FileTrack track = buildTrack(file);
+		synchronized (tracks) {
+			if (version == tracksVersion) {
+				tracks.put(file, track);
+			}
+		}
+		return track;
+	}
+
+	// traces without location are skipped
+	private static FileTrack buildTrack(SgyFile file) {
+		List<GeoData> geoData = file.getGeoData();
+		NavigableMap<Integer, IndexRange> lineRanges = file.getLineRanges();
+		Map<Integer, LineTrack> lines = new HashMap<>();
+		for (Map.Entry<Integer, IndexRange> e : lineRanges.entrySet()) {
+			IndexRange range = e.getValue();
+			double[] xs = new double[range.size()];
+			double[] ys = new double[range.size()];
+			int n = 0;
+			for (GeoData trace : geoData.subList(range.from(), range.to())) {
+				LatLon latLon = trace.getLatLon();
+				if (latLon != null) {
+					xs[n] = MapField.lonToWorldX(latLon.getLonDgr());
+					ys[n] = MapField.latToWorldY(latLon.getLatDgr());
+					n++;
+				}
+			}
+			lines.put(e.getKey(), new LineTrack(
+					Arrays.copyOf(xs, n),
+					Arrays.copyOf(ys, n)));
+		}
+		return new FileTrack(geoData, geoData.size(), lineRanges, lines);
+	}
+
+	private void clearTracks() {
+		synchronized (tracks) {
+			tracks.clear();
+			tracksVersion++;
+		}
+	}
+
 	private void drawTraceLines(Graphics2D g2, MapField field, SgyFile file) {
+		FileTrack track = getTrack(file);
+		// smallest zoom level not below the field zoom
+		int level = Math.clamp((int) Math.ceil(field.getZoom()), 0, MAX_LEVEL);
+
 		boolean isSelectedFile = Objects.equals(file, model.getCurrentFile());
 
 		Chart chart = model.getChart(file);
@@ -108,7 +229,7 @@ public class GpsTrack extends BaseLayer {
 				? chart.getSelectedLineIndex()
 				: null;
 
-		var ranges = file.getLineRanges();
+		var ranges = track.lineRanges();
 		for (Map.Entry<Integer, IndexRange> e: ranges.entrySet()) {
 			if (isSelectedFile) {
 				Integer lineIndex = e.getKey();
@@ -129,36 +250,35 @@ public class GpsTrack extends BaseLayer {
 				g2.setColor(new Color(0xFA7D6E));
 			}
 
-			IndexRange range = e.getValue();
-			var traces = file.getGeoData().subList(range.from(), range.to());
-			renderTraceLines(g2, field, traces);
+			LineTrack line = track.lines().get(e.getKey());
+			if (line != null) {
+				renderTraceLines(g2, field, line.getPolyline(level));
+			}
 		}
 	}
 
-	private static void renderTraceLines(Graphics2D g2, MapField field, List<GeoData> traces) {
-		List<Point2D> points = new ArrayList<>(traces.size());
-		for (GeoData trace : traces) {
-			Point2D point = field.latLonToScreen(trace.getLatLon());
-			points.add(point);
-		}
-		List<Integer> selected = DouglasPeucker.approximatePolyline(points,
-				APPROXIMATION_THRESHOLD, 2);
-		if (selected.size() < 2) {
+	private void renderTraceLines(Graphics2D g2, MapField field, Polyline polyline) {
+		double[] xs = polyline.xs();
+		double[] ys = polyline.ys();
+		if (xs.length < 2) {
 			return;
 		}
-		for (int i = 1; i < selected.size(); i++) {
-			Point2D p1 = points.get(selected.get(i - 1));
-			Point2D p2 = points.get(selected.get(i));
-			g2.drawLine(
-					(int)p1.getX(),
-					(int)p1.getY(),
-					(int)p2.getX(),
-					(int)p2.getY());
+		int x0 = (int) field.worldToScreenX(xs[0]);
+		int y0 = (int) field.worldToScreenY(ys[0]);
+		for (int i = 1; i < xs.length; i++) {
+			int x1 = (int) field.worldToScreenX(xs[i]);
+			int y1 = (int) field.worldToScreenY(ys[i]);
+			g2.drawLine(x0, y0, x1, y1);
+			x0 = x1;
+			y0 = y1;
 		}
 	}
 
 	@EventListener
 	private void somethingChanged(WhatChanged changed) {
+		if (changed.isTraceCut() || changed.isTraceValues()) {
+			clearTracks();
+		}
 		if (changed.isTraceCut() 
 				|| changed.isTraceValues() 
 				|| changed.isZoom()
@@ -178,6 +298,25 @@ public class GpsTrack extends BaseLayer {
 
 	@EventListener
 	private void fileClosed(FileClosedEvent fileClosedEvent) {
+		SgyFile file = fileClosedEvent.getFile();
+		if (file != null) {
+			synchronized (tracks) {
+				tracks.remove(file);
+			}
+		}
+		q.submit();
+	}
+
+	@EventListener
+	private void fileUpdated(FileUpdatedEvent fileUpdatedEvent) {
+		// locations may have changed in place
+		SgyFile file = fileUpdatedEvent.getFile();
+		if (file != null) {
+			synchronized (tracks) {
+				tracks.remove(file);
+				tracksVersion++;
+			}
+		}
 		q.submit();
 	}
 
@@ -201,12 +201,12 @@ public final class GridLayer extends BaseLayer {
         int[] cellX = new int[gridWidth + 1];
         for (int i = 0; i <= gridWidth; i++) {
             double lon = minLatLon.getLonDgr() + i * lonStep;
-            cellX[i] = (int) Math.round(field.latLonToScreen(new LatLon(minLatLon.getLatDgr(), lon)).getX());
+            cellX[i] = (int) Math.round(field.lonToScreenX(lon));
         }
         int[] cellY = new int[gridHeight + 1];
         for (int j = 0; j <= gridHeight; j++) {
             double lat = minLatLon.getLatDgr() + j * latStep;
-            cellY[j] = (int) Math.round(field.latLonToScreen(new LatLon(lat, minLatLon.getLonDgr())).getY());
+            cellY[j] = (int) Math.round(field.latToScreenY(lat));
         }
 
         for (int i = 0; i < gridWidth; i++) {
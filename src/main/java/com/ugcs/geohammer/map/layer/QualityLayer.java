@@ -10,7 +10,6 @@ import com.ugcs.geohammer.service.quality.Spatial;
 import com.ugcs.geohammer.model.event.FileSelectedEvent;
 import com.ugcs.geohammer.model.event.WhatChanged;
 import com.ugcs.geohammer.util.Check;
-import javafx.geometry.Point2D;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Polygon;
@@ -74,11 +73,12 @@ public class QualityLayer extends BaseLayer {
         double pixelSize = GoogleCoordUtils.getPixelSize(center, field.getZoom());
         double r = Math.max(1.5, pointIssue.getRadius() / pixelSize);
 
-        Point2D centerScreen = field.latLonToScreen(center);
+        double x = field.lonToScreenX(center.getLonDgr());
+        double y = field.latToScreenY(center.getLatDgr());
         g2.setColor(pointIssue.getColor());
         g2.fillOval(
-                (int) (centerScreen.getX() - r),
-                (int) (centerScreen.getY() - r),
+                (int) (x - r),
+                (int) (y - r),
                 (int) (2 * r),
                 (int) (2 * r));
     }
@@ -106,11 +106,10 @@ public class QualityLayer extends BaseLayer {
         if (points.length == 0) {
             return;
         }
-        Point2D point = field.latLonToScreen(Spatial.toLatLon(points[0]));
-        path.moveTo(point.getX(), point.getY());
+        // coordinates are lon, lat
+        path.moveTo(field.lonToScreenX(points[0].getX()), field.latToScreenY(points[0].getY()));
         for (int i = 1; i < points.length - 1; i++) {
-            point = field.latLonToScreen(Spatial.toLatLon(points[i]));
-            path.lineTo(point.getX(), point.getY());
+            path.lineTo(field.lonToScreenX(points[i].getX()), field.latToScreenY(points[i].getY()));
         }
         path.closePath();
     }
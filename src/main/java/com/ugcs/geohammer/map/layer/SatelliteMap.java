@@ -10,6 +10,9 @@ import java.util.List;
 import com.ugcs.geohammer.map.RenderQueue;
 import com.ugcs.geohammer.map.provider.GoogleTileProvider;
 import com.ugcs.geohammer.map.provider.HereMapProvider;
+import com.ugcs.geohammer.map.provider.MapProvider;
+import com.ugcs.geohammer.map.provider.MapTileCache;
+import com.ugcs.geohammer.map.provider.MapTileStore;
 import com.ugcs.geohammer.map.provider.OsmTileProvider;
 import com.ugcs.geohammer.map.provider.XyzMapProvider;
 import com.ugcs.geohammer.model.ActivationPolicy;
@@ -46,14 +49,19 @@ public class SatelliteMap extends BaseLayer implements InitializingBean {
 	private final Status status;
 	private final PrefSettings prefSettings;
 	private final BuildInfo buildInfo;
+	private final MapTileCache mapTileCache;
+	private final MapTileStore mapTileStore;
 
 	private int lastTileZoom = -1;
 
-	public SatelliteMap(Model model, Status status, PrefSettings prefSettings, BuildInfo buildInfo) {
+	public SatelliteMap(Model model, Status status, PrefSettings prefSettings, BuildInfo buildInfo,
+			MapTileCache mapTileCache, MapTileStore mapTileStore) {
 		this.model = model;
 		this.status = status;
 		this.prefSettings = prefSettings;
 		this.buildInfo = buildInfo;
+		this.mapTileCache = mapTileCache;
+		this.mapTileStore = mapTileStore;
 	}
 
 	private LatLon click;
@@ -64,8 +72,19 @@ public class SatelliteMap extends BaseLayer implements InitializingBean {
 	public void afterPropertiesSet() throws Exception {
 		recalcQueue = new RenderQueue(model) {
 			public void draw(BufferedImage image, MapField field) {
-				if (field.getMapProvider() != null) {
-					this.setRenderImage(field.getMapProvider().loadimg(field));
+				MapProvider mapProvider = field.getMapProvider();
+				if (mapProvider != null) {
+					this.setRenderImage(mapProvider.loadimg(field, new MapProvider.LoadListener() {
+						@Override
+						public void onProgress(BufferedImage partialImage) {
+							publish(partialImage, field);
+						}
+
+						@Override
+						public boolean isStale() {
+							return hasPending();
+						}
+					}));
 				}
 			}
 
@@ -87,7 +106,7 @@ public class SatelliteMap extends BaseLayer implements InitializingBean {
 
 		menuItem1.setOnAction(e -> {
 			closeCurrentProvider();
-			model.getMapField().setMapProvider(new XyzMapProvider(new GoogleTileProvider()));
+			model.getMapField().setMapProvider(new XyzMapProvider(new GoogleTileProvider(), mapTileCache, mapTileStore));
 			setActive(model.getMapField().getMapProvider() != null);
 			clearTiles();
 			model.publishEvent(new WhatChanged(this, WhatChanged.Change.mapzoom));
@@ -103,7 +122,7 @@ public class SatelliteMap extends BaseLayer implements InitializingBean {
 
 		menuItem3.setOnAction(e -> {
 			closeCurrentProvider();
-			model.getMapField().setMapProvider(new XyzMapProvider(new OsmTileProvider(buildInfo.getBuildVersion())));
+			model.getMapField().setMapProvider(new XyzMapProvider(new OsmTileProvider(buildInfo.getBuildVersion()), mapTileCache, mapTileStore));
 			setActive(model.getMapField().getMapProvider() != null);
 			clearTiles();
 			model.publishEvent(new WhatChanged(this, WhatChanged.Change.mapzoom));
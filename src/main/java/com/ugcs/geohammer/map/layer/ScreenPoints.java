@@ -0,0 +1,89 @@
+package com.ugcs.geohammer.map.layer;
+
+import java.util.Arrays;
+
+import com.ugcs.geohammer.model.LatLon;
+import com.ugcs.geohammer.model.MapField;
+import org.jspecify.annotations.Nullable;
+
+// Reusable primitive buffers of points projected to the map screen.
+// A layer keeps an instance and refills it on every frame, buffers
+// grow to the largest frame and are not allocated again.
+public final class ScreenPoints {
+
+    private double[] lats = new double[0];
+
+    private double[] lons = new double[0];
+
+    private double[] xs = new double[0];
+
+    private double[] ys = new double[0];
+
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // points without location are kept to preserve indices,
+    // their screen coordinates are NaN, see hasLocation()
+    public void add(@Nullable LatLon latLon) {
+        if (latLon != null) {
+            add(latLon.getLatDgr(), latLon.getLonDgr());
+        } else {
+            add(Double.NaN, Double.NaN);
+        }
+    }
+
+    public void add(double lat, double lon) {
+        if (size == lats.length) {
+            grow();
+        }
+        lats[size] = lat;
+        lons[size] = lon;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, 2 * lats.length);
+        lats = Arrays.copyOf(lats, capacity);
+        lons = Arrays.copyOf(lons, capacity);
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    public void project(MapField field) {
+        field.latLonToScreen(lats, lons, xs, ys, size);
+        for (int i = 0; i < size; i++) {
+            if (!hasLocation(i)) {
+                xs[i] = Double.NaN;
+                ys[i] = Double.NaN;
+            }
+        }
+    }
+
+    public boolean hasLocation(int i) {
+        return !Double.isNaN(lats[i]) && !Double.isNaN(lons[i]);
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    // projected coordinates, valid up to size
+    public double[] xs() {
+        return xs;
+    }
+
+    public double[] ys() {
+        return ys;
+    }
+}
@@ -1,71 +1,89 @@
 package com.ugcs.geohammer.map.layer.radar;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+import com.ugcs.geohammer.math.ArrayMath;
 import com.ugcs.geohammer.model.Model;
 import com.ugcs.geohammer.format.gpr.Trace;
 import com.ugcs.geohammer.format.TraceFile;
+import com.ugcs.geohammer.util.RangeTasks;
 
 public class MedianScaleBuilder implements ArrayBuilder {
 
+	// sample rows per parallel task
+	private static final int ROWS_PER_TASK = 16;
+
 	private final Model model;
-	
-	private double[][] scale = null;
-	
+
+	// scale arrays by file, guarded by this
+	private final Map<TraceFile, double[][]> scales = new IdentityHashMap<>();
+
+	// incremented on clear, guarded by this
+	private int version;
+
 	public MedianScaleBuilder(Model model) {
 		this.model = model;
 	}
-	
-	public void clear() {
-		scale = null;
+
+	public synchronized void clear() {
+		scales.clear();
+		version++;
 	}
-	
+
 	@Override
 	public double[][] build(TraceFile file) {
-		
-		if (scale != null) {
-			return scale;
+		int buildVersion;
+		synchronized (this) {
+			double[][] scale = scales.get(file);
+			if (scale != null) {
+				return scale;
+			}
+			buildVersion = version;
 		}
 
-		List<Trace> traces = file.getTraces();
-        int maxSamples = 0;
-        for (Trace trace : traces) {
-            maxSamples = Math.max(maxSamples, trace.numSamples());
-        }
+		Trace[] traces = file.getTraces().toArray(new Trace[0]);
+		int maxSamples = 0;
+		for (Trace trace : traces) {
+			maxSamples = Math.max(maxSamples, trace.numSamples());
+		}
 
 		double[][] underconstruction = new double[2][maxSamples];
-		
-		for (int smp = 0; smp < maxSamples; smp++) {
+		RangeTasks.forEach(maxSamples, ROWS_PER_TASK, (from, to) -> {
+			// edge values of a sample row
+			float[] all = new float[traces.length];
+			for (int smp = from; smp < to; smp++) {
+				int n = 0;
+				for (Trace trace : traces) {
+					if (trace.getEdge(smp) >= 3) {
+						all[n++] = Math.abs(smp < trace.numSamples() ? trace.getSample(smp) : 0);
+					}
+				}
 
-			//all edge values of sample layer
-			List<Float> all = new ArrayList<>();
+				if (n == 0) {
+					underconstruction[0][smp] = 0;
+					underconstruction[1][smp] = 100 / 1000;
+				} else {
+					// same ranks as in the sorted row
+					int medianRank = n * 35 / 70;
+					int principalRank = n * 98 / 100;
+					float median = ArrayMath.select(all, 0, n, medianRank);
+					float principal95 = ArrayMath.select(all, medianRank, n, principalRank);
+
+					//threshold
+					underconstruction[0][smp] = median;
+					//kf
+					underconstruction[1][smp] =
+							100 / Math.max(0.5, principal95 - median);
+				}
+			}
+		});
 
-            for (Trace trace : traces) {
-                if (trace.getEdge(smp) >= 3) {
-                    all.add(Math.abs(smp < trace.numSamples() ? trace.getSample(smp) : 0));
-                }
-            }
-			
-			if (all.isEmpty()) {
-				underconstruction[0][smp] = 0;
-				underconstruction[1][smp] = 100 / 1000;
-			} else {
-				Collections.sort(all);
-				float median = all.get(all.size() * 35 / 70);
-				float principal95 = all.get(all.size() * 98 / 100);
-	
-				//threshold
-				underconstruction[0][smp] = median;
-				//kf
-				underconstruction[1][smp] = 
-						100 / Math.max(0.5, principal95 - median);
+		synchronized (this) {
+			if (buildVersion == version) {
+				scales.put(file, underconstruction);
 			}
 		}
-		
-		scale = underconstruction;
-		
-		return scale;
+		return underconstruction;
 	}
 }
@@ -3,16 +3,18 @@ package com.ugcs.geohammer.map.layer.radar;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.List;
 
 import com.ugcs.geohammer.map.RenderQueue;
 import com.ugcs.geohammer.map.layer.BaseLayer;
+import com.ugcs.geohammer.map.layer.ScreenPoints;
 import com.ugcs.geohammer.format.TraceFile;
 import com.ugcs.geohammer.model.ActivationPolicy;
 import com.ugcs.geohammer.model.ToolNode;
 import com.ugcs.geohammer.model.event.FileOpenedEvent;
+import com.ugcs.geohammer.model.event.FileUpdatedEvent;
 import com.ugcs.geohammer.model.event.WhatChanged;
-import javafx.geometry.Point2D;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
@@ -67,6 +69,12 @@ public class RadarMap extends BaseLayer implements InitializingBean {
 	private ArrayBuilder autoArrayBuilder;
 
 	private final Settings radarMapSettings = new Settings();
+
+	// projected trace locations, reused by the render thread
+	private final ScreenPoints points = new ScreenPoints();
+
+	// trace indices of the projected points
+	private int[] pointTraces = new int[0];
 	
 	private EventHandler<ActionEvent> showMapListener = new EventHandler<ActionEvent>() {
 		
@@ -201,6 +209,14 @@ public class RadarMap extends BaseLayer implements InitializingBean {
 			q.submit();
 	}
 
+	@EventListener
+	private void fileUpdated(FileUpdatedEvent event) {
+		// trace locations may have changed
+		if (event.getFile() instanceof TraceFile) {
+			q.submit();
+		}
+	}
+
 	// prepare image in thread
 	public void createHiRes(MapField field, BufferedImage img) {
 		DblArray da = new DblArray(img.getWidth(), img.getHeight());
@@ -237,21 +253,47 @@ public class RadarMap extends BaseLayer implements InitializingBean {
 		int radius = radarMapSettings.getRadius();
 		int centerX = da.getWidth() / 2;
 		int centerY = da.getHeight() / 2;
-		
-		for (int i = 0; i < file.numTraces(); i++) {
-			Trace trace = traces.get(i);
-			
+
+		int margin = radius;
+		if (profile.radius != null) {
+			for (int r : profile.radius) {
+				margin = Math.max(margin, r);
+			}
+		}
+
+		// traces with circles intersecting the image
+		int numTraces = file.numTraces();
+		points.clear();
+		model.getTraceIndex().findInBounds(file,
+				field.screenToWorldX(-centerX - margin),
+				field.screenToWorldY(-centerY - margin),
+				field.screenToWorldX(da.getWidth() - centerX + margin),
+				field.screenToWorldY(da.getHeight() - centerY + margin),
+				i -> {
+					if (i < numTraces) {
+						if (points.size() == pointTraces.length) {
+							pointTraces = Arrays.copyOf(pointTraces, Math.max(16, 2 * pointTraces.length));
+						}
+						pointTraces[points.size()] = i;
+						points.add(traces.get(i).getLatLon());
+					}
+				});
+		points.project(field);
+
+		for (int k = 0; k < points.size(); k++) {
+			if (!points.hasLocation(k)) {
+				continue;
+			}
+			int i = pointTraces[k];
 			double alpha = profile.intensity[i];
 			int effectRadius = 
 					(int) (profile.radius != null ? profile.radius[i] : radius);
 			
 			if (alpha > MIN_CIRCLE_THRESHOLD) {				
 			
-				Point2D p = field.latLonToScreen(trace.getLatLon());
-				
 				da.drawCircle(
-					(int) p.getX() + centerX, 
-					(int) p.getY() + centerY, 
+					(int) points.getX(k) + centerX,
+					(int) points.getY(k) + centerY, 
 					effectRadius, 
 					alpha);
 				
@@ -17,7 +17,7 @@ public class ScaleArrayBuilder implements ArrayBuilder {
 	 * @see com.ugcs.geohammer.map.layer.radar.ArrayBuilder#build()
 	 */
 	@Override
-	public double[][] build(TraceFile file) {
+	public synchronized double[][] build(TraceFile file) {
 		
 		if (scaleArray != null) {
 			return scaleArray;
@@ -37,7 +37,7 @@ public class ScaleArrayBuilder implements ArrayBuilder {
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		scaleArray = null;
 	}
 
@@ -9,11 +9,27 @@ public interface MapProvider {
 
 	@Nullable
 	BufferedImage loadimg(MapField field);
+
+	// providers composing the image from parts may pass
+	// partial images to the listener while loading
+	@Nullable
+	default BufferedImage loadimg(MapField field, @Nullable LoadListener listener) {
+		return loadimg(field);
+	}
 	
 	int getMaxZoom();
 
 	default int getMinZoom() {
 		return 2;
 	};
-	
+
+	interface LoadListener {
+
+		// called on the loading thread with a copy of the image
+		void onProgress(BufferedImage image);
+
+		// loading may stop early when the image is no longer needed
+		boolean isStale();
+	}
+
 }
@@ -0,0 +1,102 @@
+package com.ugcs.geohammer.map.provider;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Decoded map tiles shared by all tile providers, so that a map
+// refresh over the same tiles does not read and decode cached files.
+// Tiles are evicted in LRU order when their rasters exceed the budget.
+// Cached images are shared and must not be modified.
+@Component
+public class MapTileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MapTileCache.class);
+
+    static final long DEFAULT_MAX_BYTES = 128L << 20;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, Entry> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long totalBytes;
+
+    private long hits;
+
+    private long misses;
+
+    record Key(String prefix, XyzTile tile) {
+    }
+
+    private record Entry(BufferedImage image, long bytes) {
+    }
+
+    public MapTileCache(@Value("${map.tiles.maxBytes:134217728}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        log.info("Map tile cache size: {} MB", maxBytes >> 20);
+    }
+
+    public synchronized @Nullable BufferedImage get(String prefix, XyzTile tile) {
+        Entry entry = tiles.get(new Key(prefix, tile));
+        if (entry != null) {
+            hits++;
+            return entry.image();
+        }
+        misses++;
+        return null;
+    }
+
+    public void put(String prefix, XyzTile tile, BufferedImage image) {
+        Check.notNull(prefix);
+        Check.notNull(tile);
+        Check.notNull(image);
+
+        long bytes = sizeInBytes(image);
+        if (bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            Entry replaced = tiles.put(new Key(prefix, tile), new Entry(image, bytes));
+            if (replaced != null) {
+                totalBytes -= replaced.bytes();
+            }
+            totalBytes += bytes;
+            Iterator<Entry> it = tiles.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().bytes();
+                it.remove();
+            }
+        }
+    }
+
+    private static long sizeInBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long elementBytes = Math.max(1, DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+        return (long) buffer.getSize() * buffer.getNumBanks() * elementBytes;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
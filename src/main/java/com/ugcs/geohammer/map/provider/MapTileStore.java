@@ -0,0 +1,139 @@
+package com.ugcs.geohammer.map.provider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ugcs.geohammer.model.LatLon;
+import com.ugcs.geohammer.util.Check;
+import com.ugcs.geohammer.util.Strings;
+import jakarta.annotation.PreDestroy;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Disk store of encoded map tiles, one pack file per provider
+// cache prefix. Each pack is limited to the configured size.
+@Component
+public class MapTileStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MapTileStore.class);
+
+    private static final String PACK_SUFFIX = ".pack";
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    // file extensions of tiles in a seed directory
+    private static final String[] SEED_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+    private final Path basePath;
+
+    private final long maxBytes;
+
+    private final Map<String, TilePack> packs = new HashMap<>();
+
+    public MapTileStore(
+            @Value("${map.tiles.dir:}") String dir,
+            @Value("${map.tiles.pack.maxBytes:1073741824}") long maxBytes) {
+        this.basePath = Strings.isNullOrEmpty(dir)
+                ? Path.of(System.getProperty("user.home"), ".geohammer", "tiles")
+                : Path.of(dir);
+        this.maxBytes = maxBytes;
+        log.info("Map tile store: {}, {} MB per provider", basePath, maxBytes >> 20);
+    }
+
+    private synchronized TilePack getPack(String prefix) throws IOException {
+        Check.notEmpty(prefix);
+        try {
+            return packs.computeIfAbsent(prefix, p -> {
+                try {
+                    Files.createDirectories(basePath);
+                    return new TilePack(
+                            basePath.resolve(p + PACK_SUFFIX),
+                            basePath.resolve(p + INDEX_SUFFIX),
+                            maxBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // encoded tile data or null when the tile is not stored
+    public byte @Nullable [] read(String prefix, XyzTile tile) throws IOException {
+        return getPack(prefix).read(tile);
+    }
+
+    public void write(String prefix, XyzTile tile, byte[] data) throws IOException {
+        getPack(prefix).write(tile, data);
+    }
+
+    // copies tiles of the area between two corners at zoom levels
+    // from minZoom to maxZoom from a directory in the z/x/y.png
+    // layout; tiles already stored are skipped. Returns number
+    // of tiles added.
+    public int seed(String prefix, Path sourceDir, LatLon corner1, LatLon corner2,
+            int minZoom, int maxZoom) throws IOException {
+        Check.notNull(sourceDir);
+        Check.notNull(corner1);
+        Check.notNull(corner2);
+        Check.condition(minZoom >= 0 && minZoom <= maxZoom);
+
+        TilePack pack = getPack(prefix);
+        int added = 0;
+        for (int z = minZoom; z <= maxZoom; z++) {
+            XyzTile tile1 = XyzTile.fromLatLon(corner1, z);
+            XyzTile tile2 = XyzTile.fromLatLon(corner2, z);
+            int maxIndex = (1 << z) - 1;
+            int minX = Math.clamp(Math.min(tile1.x(), tile2.x()), 0, maxIndex);
+            int maxX = Math.clamp(Math.max(tile1.x(), tile2.x()), 0, maxIndex);
+            int minY = Math.clamp(Math.min(tile1.y(), tile2.y()), 0, maxIndex);
+            int maxY = Math.clamp(Math.max(tile1.y(), tile2.y()), 0, maxIndex);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    XyzTile tile = new XyzTile(x, y, z);
+                    if (pack.contains(tile)) {
+                        continue;
+                    }
+                    Path path = findSeedTile(sourceDir, tile);
+                    if (path != null) {
+                        pack.write(tile, Files.readAllBytes(path));
+                        added++;
+                    }
+                }
+            }
+        }
+        log.info("Seeded {} tiles of {} from {}", added, prefix, sourceDir);
+        return added;
+    }
+
+    private static @Nullable Path findSeedTile(Path sourceDir, XyzTile tile) {
+        Path dir = sourceDir.resolve(Integer.toString(tile.z())).resolve(Integer.toString(tile.x()));
+        for (String extension : SEED_EXTENSIONS) {
+            Path path = dir.resolve(tile.y() + extension);
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (Map.Entry<String, TilePack> e : packs.entrySet()) {
+            try {
+                e.getValue().close();
+            } catch (IOException ex) {
+                log.warn("Failed to close tile pack {}", e.getKey(), ex);
+            }
+        }
+        packs.clear();
+    }
+}
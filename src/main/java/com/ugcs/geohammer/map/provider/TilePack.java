@@ -0,0 +1,395 @@
+package com.ugcs.geohammer.map.provider;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Encoded tiles of a single provider appended to one pack file.
+// A record of the pack is the x/y/z of a tile, the data length
+// and the data, so the offset index can always be rebuilt by
+// scanning the pack. The index is persisted next to the pack on
+// close and compaction, records appended after the persisted
+// index are scanned on open. When the pack exceeds its budget it
+// is rewritten with the recently used tiles only.
+final class TilePack implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TilePack.class);
+
+    private static final int PACK_MAGIC = 0x47485450;
+
+    private static final int INDEX_MAGIC = 0x47485449;
+
+    // magic and pack id
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    // x, y, z and data length
+    private static final int RECORD_HEADER_SIZE = 4 * Integer.BYTES;
+
+    private static final int MAX_ZOOM = 30;
+
+    private final Path packPath;
+
+    private final Path indexPath;
+
+    private final long maxBytes;
+
+    // reads share the channel, appends and compaction are exclusive
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // tile data offsets in LRU order, guarded by itself
+    private final LinkedHashMap<XyzTile, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+
+    private FileChannel channel;
+
+    // random id binding the persisted index to the pack
+    private long packId;
+
+    // bytes of indexed records, excluding replaced ones
+    private long liveBytes;
+
+    private record Entry(long offset, int length) {
+
+        long recordSize() {
+            return RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    TilePack(Path packPath, Path indexPath, long maxBytes) throws IOException {
+        this.packPath = Check.notNull(packPath);
+        this.indexPath = Check.notNull(indexPath);
+        Check.condition(maxBytes > HEADER_SIZE);
+        this.maxBytes = maxBytes;
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(packPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (!readHeader()) {
+            channel.truncate(0);
+            packId = ThreadLocalRandom.current().nextLong();
+            writeHeader(channel, packId);
+        }
+        long indexed = loadIndex();
+        scan(indexed);
+        log.info("Tile pack {}: {} tiles, {} MB", packPath, index.size(), channel.size() >> 20);
+    }
+
+    private boolean readHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != PACK_MAGIC) {
+            log.warn("Unknown tile pack format {}, discarding", packPath);
+            return false;
+        }
+        packId = header.getLong(Integer.BYTES);
+        return true;
+    }
+
+    private static void writeHeader(FileChannel channel, long packId) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(PACK_MAGIC)
+                .putLong(packId)
+                .flip();
+        writeFully(channel, header, 0);
+    }
+
+    // returns pack length covered by the persisted index,
+    // or the header size when there is no index for this pack
+    private long loadIndex() {
+        if (!Files.exists(indexPath)) {
+            return HEADER_SIZE;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readLong() != packId) {
+                return HEADER_SIZE;
+            }
+            long indexed = in.readLong();
+            if (indexed < HEADER_SIZE || indexed > channel.size()) {
+                return HEADER_SIZE;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                XyzTile tile = new XyzTile(in.readInt(), in.readInt(), in.readInt());
+                Entry entry = new Entry(in.readLong(), in.readInt());
+                if (entry.offset() < HEADER_SIZE + RECORD_HEADER_SIZE
+                        || entry.offset() + entry.length() > indexed) {
+                    throw new IOException("Invalid index entry");
+                }
+                putEntry(tile, entry);
+            }
+            return indexed;
+        } catch (IOException e) {
+            log.warn("Failed to read tile index {}, rebuilding", indexPath, e);
+            index.clear();
+            liveBytes = 0;
+            return HEADER_SIZE;
+        }
+    }
+
+    // indexes records from the position to the end of the pack;
+    // a torn record left by an interrupted append is truncated
+    private void scan(long position) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            XyzTile tile = new XyzTile(header.getInt(0), header.getInt(4), header.getInt(8));
+            int length = header.getInt(12);
+            if (!isValid(tile) || length < 0
+                    || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            putEntry(tile, new Entry(position + RECORD_HEADER_SIZE, length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position < size) {
+            log.warn("Truncating tile pack {} at {} of {}", packPath, position, size);
+            channel.truncate(position);
+        }
+    }
+
+    static boolean isValid(XyzTile tile) {
+        if (tile.z() < 0 || tile.z() > MAX_ZOOM) {
+            return false;
+        }
+        int numTiles = 1 << tile.z();
+        return tile.x() >= 0 && tile.x() < numTiles
+                && tile.y() >= 0 && tile.y() < numTiles;
+    }
+
+    private void putEntry(XyzTile tile, Entry entry) {
+        Entry replaced = index.put(tile, entry);
+        if (replaced != null) {
+            liveBytes -= replaced.recordSize();
+        }
+        liveBytes += entry.recordSize();
+    }
+
+    int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    boolean contains(XyzTile tile) {
+        synchronized (index) {
+            return index.containsKey(tile);
+        }
+    }
+
+    byte @Nullable [] read(XyzTile tile) throws IOException {
+        lock.readLock().lock();
+        try {
+            Entry entry;
+            synchronized (index) {
+                entry = index.get(tile);
+            }
+            if (entry == null) {
+                return null;
+            }
+            ByteBuffer data = ByteBuffer.allocate(entry.length());
+            readFully(channel, data, entry.offset());
+            return data.array();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void write(XyzTile tile, byte[] data) throws IOException {
+        Check.condition(isValid(tile));
+        Check.notNull(data);
+
+        lock.writeLock().lock();
+        try {
+            long position = channel.size();
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length)
+                    .putInt(tile.x())
+                    .putInt(tile.y())
+                    .putInt(tile.z())
+                    .putInt(data.length)
+                    .put(data)
+                    .flip();
+            try {
+                writeFully(channel, record, position);
+            } catch (IOException e) {
+                channel.truncate(position);
+                throw e;
+            }
+            synchronized (index) {
+                putEntry(tile, new Entry(position + RECORD_HEADER_SIZE, data.length));
+            }
+            if (channel.size() > maxBytes) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // drops least recently used tiles down to 3/4 of the budget
+    // and rewrites the pack without dropped and replaced records
+    private void compact() throws IOException {
+        long targetBytes = maxBytes / 4 * 3 - HEADER_SIZE;
+        LinkedHashMap<XyzTile, Entry> kept;
+        synchronized (index) {
+            Iterator<Entry> it = index.values().iterator();
+            while (liveBytes > targetBytes && it.hasNext()) {
+                liveBytes -= it.next().recordSize();
+                it.remove();
+            }
+            kept = new LinkedHashMap<>(index);
+        }
+
+        Path tmpPath = packPath.resolveSibling(packPath.getFileName() + ".tmp");
+        long newId = ThreadLocalRandom.current().nextLong();
+        LinkedHashMap<XyzTile, Entry> moved = new LinkedHashMap<>(kept.size());
+        try (FileChannel target = FileChannel.open(tmpPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeHeader(target, newId);
+            long position = HEADER_SIZE;
+            for (Map.Entry<XyzTile, Entry> e : kept.entrySet()) {
+                Entry entry = e.getValue();
+                long from = entry.offset() - RECORD_HEADER_SIZE;
+                long count = entry.recordSize();
+                long copied = 0;
+                while (copied < count) {
+                    long n = channel.transferTo(from + copied, count - copied,
+                            target.position(position + copied));
+                    if (n <= 0) {
+                        throw new EOFException();
+                    }
+                    copied += n;
+                }
+                moved.put(e.getKey(), new Entry(position + RECORD_HEADER_SIZE, entry.length()));
+                position += count;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+
+        channel.close();
+        try {
+            move(tmpPath, packPath);
+        } catch (IOException e) {
+            // old pack stays in place, offsets of kept tiles are valid
+            Files.deleteIfExists(tmpPath);
+            channel = FileChannel.open(packPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        channel = FileChannel.open(packPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        packId = newId;
+        synchronized (index) {
+            index.clear();
+            index.putAll(moved);
+        }
+        log.info("Tile pack {} compacted: {} tiles, {} MB",
+                packPath, moved.size(), channel.size() >> 20);
+        saveIndex();
+    }
+
+    private void saveIndex() throws IOException {
+        LinkedHashMap<XyzTile, Entry> entries;
+        synchronized (index) {
+            entries = new LinkedHashMap<>(index);
+        }
+        Path tmpPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(packId);
+            out.writeLong(channel.size());
+            out.writeInt(entries.size());
+            // least recently used first, reloaded in the same order
+            for (Map.Entry<XyzTile, Entry> e : entries.entrySet()) {
+                XyzTile tile = e.getKey();
+                out.writeInt(tile.x());
+                out.writeInt(tile.y());
+                out.writeInt(tile.z());
+                out.writeLong(e.getValue().offset());
+                out.writeInt(e.getValue().length());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+        move(tmpPath, indexPath);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                saveIndex();
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -2,19 +2,24 @@ package com.ugcs.geohammer.map.provider;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.AtomicMoveNotSupportedException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 
@@ -36,20 +41,61 @@ public class XyzMapProvider implements MapProvider, Closeable {
 
 	private static final int TILE_COUNT = GRID_SIZE * GRID_SIZE;
 
+	// min interval between partial images passed to a load listener
+	private static final long FRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 30;
+
+	// request priorities, lower are fetched first
+	private static final int PRIORITY_VISIBLE = 0;
+	private static final int PRIORITY_RING = 1;
+	private static final int PRIORITY_NEXT_ZOOM = 2;
+
 	private final XyzTileProvider tileProvider;
 
-	private final ExecutorService tilePool;
+	private final ThreadPoolExecutor tilePool;
+
+	private final MapTileCache tileCache;
+
+	@Nullable
+	private final MapTileStore tileStore;
+
+	// queued and running requests by tile, guarded by itself
+	private final Map<XyzTile, TileRequest> inFlight = new HashMap<>();
 
+	// incremented for every loaded image, requests of earlier
+	// generations are dropped unless requested again
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	// tiles are kept in memory only
 	public XyzMapProvider(XyzTileProvider tileProvider) {
+		this(tileProvider, new MapTileCache(MapTileCache.DEFAULT_MAX_BYTES), null);
+	}
+
+	public XyzMapProvider(XyzTileProvider tileProvider, MapTileCache tileCache,
+			@Nullable MapTileStore tileStore) {
 		this.tileProvider = tileProvider;
-		this.tilePool = Executors.newFixedThreadPool(
-				tileProvider.maxConcurrentRequests(),
+		this.tileCache = tileCache;
+		this.tileStore = tileStore;
+		int numThreads = tileProvider.maxConcurrentRequests();
+		this.tilePool = new ThreadPoolExecutor(
+				numThreads, numThreads,
+				0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<>(),
 				Thread.ofVirtual().factory());
 	}
 
 	@Override
 	public void close() {
-		tilePool.shutdown();
+		List<Runnable> queued = tilePool.shutdownNow();
+		synchronized (inFlight) {
+			for (Runnable task : queued) {
+				if (task instanceof TileRequest request) {
+					request.future.cancel(false);
+				}
+			}
+			inFlight.clear();
+		}
 	}
 
 	@Override
@@ -60,39 +106,43 @@ public class XyzMapProvider implements MapProvider, Closeable {
 	@Nullable
 	@Override
 	public BufferedImage loadimg(MapField field) {
+		return loadimg(field, null);
+	}
+
+	@Nullable
+	@Override
+	public BufferedImage loadimg(MapField field, @Nullable LoadListener listener) {
 		int intZoom = Math.clamp((int) field.getZoom(), getMinZoom(), getMaxZoom());
 		field.setZoom(intZoom);
 		System.setProperty("java.net.useSystemProxies", "true");
-		return createCenteredMapImage(field, intZoom);
+		return createCenteredMapImage(field, intZoom, listener);
 	}
 
 	@Nullable
-	private BufferedImage createCenteredMapImage(MapField field, int zoom) {
+	private BufferedImage createCenteredMapImage(MapField field, int zoom, @Nullable LoadListener listener) {
 		LatLon mapCenter = field.getSceneCenter();
 		if (mapCenter == null) {
 			return null;
 		}
 
-		XyzTile centralTile = latLonToTile(mapCenter, zoom);
+		XyzTile centralTile = XyzTile.fromLatLon(mapCenter, zoom);
 		field.setSceneCenter(getTileCenter(centralTile));
 
+		long requestGeneration = generation.incrementAndGet();
 		int m = (GRID_SIZE - 1) / 2;
 
 		record TileFetch(int dx, int dy, CompletableFuture<BufferedImage> future) {}
-		List<TileFetch> fetches = new ArrayList<>(TILE_COUNT);
+		// fetches in order of completion
+		BlockingQueue<TileFetch> completed = new LinkedBlockingQueue<>();
 		for (int dx = -m; dx <= m; dx++) {
 			for (int dy = -m; dy <= m; dy++) {
 				XyzTile tile = new XyzTile(centralTile.x() + dx, centralTile.y() + dy, centralTile.z());
-				CompletableFuture<BufferedImage> future;
-				try {
-					future = CompletableFuture.supplyAsync(() -> fetchTile(tile), tilePool);
-				} catch (RejectedExecutionException ignored) {
-					// Pool was shut down mid-render due to a provider switch; skip this tile.
-					future = CompletableFuture.completedFuture(null);
-				}
-				fetches.add(new TileFetch(dx, dy, future));
+				TileFetch fetch = new TileFetch(dx, dy,
+						requestTile(tile, PRIORITY_VISIBLE, requestGeneration));
+				fetch.future().whenComplete((image, e) -> completed.add(fetch));
 			}
 		}
+		prefetch(centralTile, m, requestGeneration);
 
 		BufferedImage combinedImage = new BufferedImage(MAP_IMAGE_SIZE, MAP_IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
 		Graphics2D g2d = combinedImage.createGraphics();
@@ -100,29 +150,178 @@ public class XyzMapProvider implements MapProvider, Closeable {
 				MAP_IMAGE_SIZE / 2.0 - GoogleCoordUtils.TILE_SIZE / 2.0,
 				MAP_IMAGE_SIZE / 2.0 - GoogleCoordUtils.TILE_SIZE / 2.0);
 
-		for (TileFetch fetch : fetches) {
+		long lastProgress = System.nanoTime();
+		int remaining = TILE_COUNT;
+		while (remaining > 0) {
+			if (listener != null && listener.isStale()) {
+				break;
+			}
+			TileFetch fetch;
 			try {
-				BufferedImage tileImage = fetch.future().get();
-				if (tileImage != null) {
-					g2d.drawImage(
-							tileImage,
-							(int) drawOffset.getX() + fetch.dx() * GoogleCoordUtils.TILE_SIZE,
-							(int) drawOffset.getY() + fetch.dy() * GoogleCoordUtils.TILE_SIZE,
-							null);
-				}
+				fetch = completed.poll(FRAME_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
 			} catch (InterruptedException e) {
-				fetches.forEach(f -> f.future().cancel(true));
 				Thread.currentThread().interrupt();
 				break;
-			} catch (ExecutionException e) {
+			}
+			if (fetch == null) {
+				continue;
+			}
+			remaining--;
+
+			BufferedImage tileImage = null;
+			try {
+				tileImage = fetch.future().join();
+			} catch (CancellationException e) {
+				// provider was closed or the request went stale
+			} catch (CompletionException e) {
 				log.warn("Tile fetch failed", e.getCause());
 			}
+			if (tileImage == null) {
+				continue;
+			}
+			g2d.drawImage(
+					tileImage,
+					(int) drawOffset.getX() + fetch.dx() * GoogleCoordUtils.TILE_SIZE,
+					(int) drawOffset.getY() + fetch.dy() * GoogleCoordUtils.TILE_SIZE,
+					null);
+
+			long now = System.nanoTime();
+			if (listener != null && remaining > 0 && now - lastProgress >= FRAME_INTERVAL_NANOS) {
+				listener.onProgress(copyImage(combinedImage));
+				lastProgress = now;
+			}
 		}
 
 		g2d.dispose();
 		return combinedImage;
 	}
 
+	// ring of tiles around the grid and tiles of the next zoom
+	// level under the central part of the grid
+	private void prefetch(XyzTile centralTile, int m, long requestGeneration) {
+		int r = m + 1;
+		for (int dx = -r; dx <= r; dx++) {
+			for (int dy = -r; dy <= r; dy++) {
+				if (Math.abs(dx) == r || Math.abs(dy) == r) {
+					requestTile(new XyzTile(centralTile.x() + dx, centralTile.y() + dy, centralTile.z()),
+							PRIORITY_RING, requestGeneration);
+				}
+			}
+		}
+		if (centralTile.z() >= getMaxZoom()) {
+			return;
+		}
+		int h = m / 2;
+		for (int dx = -h; dx <= h; dx++) {
+			for (int dy = -h; dy <= h; dy++) {
+				int x = 2 * (centralTile.x() + dx);
+				int y = 2 * (centralTile.y() + dy);
+				for (int i = 0; i < 4; i++) {
+					requestTile(new XyzTile(x + (i & 1), y + (i >> 1), centralTile.z() + 1),
+							PRIORITY_NEXT_ZOOM, requestGeneration);
+				}
+			}
+		}
+	}
+
+	// a tile requested while a request for it is in flight shares
+	// the result of that request
+	private CompletableFuture<BufferedImage> requestTile(XyzTile tile, int priority, long requestGeneration) {
+		synchronized (inFlight) {
+			TileRequest current = inFlight.get(tile);
+			if (current != null && (current.running
+					|| current.generation == requestGeneration && current.priority <= priority)) {
+				return current.future;
+			}
+			// queued request is re-queued for the current view,
+			// the earlier one is skipped when taken from the queue
+			CompletableFuture<BufferedImage> future = current != null
+					? current.future
+					: new CompletableFuture<>();
+			TileRequest request = new TileRequest(tile, priority, requestGeneration,
+					sequence.incrementAndGet(), future);
+			try {
+				tilePool.execute(request);
+			} catch (RejectedExecutionException e) {
+				// pool was shut down due to a provider switch
+				future.cancel(false);
+				return future;
+			}
+			inFlight.put(tile, request);
+			return future;
+		}
+	}
+
+	private static BufferedImage copyImage(BufferedImage image) {
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+		Graphics2D g2d = copy.createGraphics();
+		g2d.drawImage(image, 0, 0, null);
+		g2d.dispose();
+		return copy;
+	}
+
+	private final class TileRequest implements Runnable, Comparable<TileRequest> {
+
+		private final XyzTile tile;
+
+		private final int priority;
+
+		private final long generation;
+
+		private final long sequence;
+
+		private final CompletableFuture<BufferedImage> future;
+
+		// guarded by inFlight
+		private boolean running;
+
+		TileRequest(XyzTile tile, int priority, long generation, long sequence,
+				CompletableFuture<BufferedImage> future) {
+			this.tile = tile;
+			this.priority = priority;
+			this.generation = generation;
+			this.sequence = sequence;
+			this.future = future;
+		}
+
+		// latest generation first, then by priority and request order
+		@Override
+		public int compareTo(TileRequest other) {
+			if (generation != other.generation) {
+				return Long.compare(other.generation, generation);
+			}
+			if (priority != other.priority) {
+				return Integer.compare(priority, other.priority);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+
+		@Override
+		public void run() {
+			synchronized (inFlight) {
+				if (inFlight.get(tile) != this) {
+					// re-queued by a later request
+					return;
+				}
+				if (generation < XyzMapProvider.this.generation.get()) {
+					inFlight.remove(tile);
+					future.cancel(false);
+					return;
+				}
+				running = true;
+			}
+			try {
+				future.complete(fetchTile(tile));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				synchronized (inFlight) {
+					inFlight.remove(tile, this);
+				}
+			}
+		}
+	}
+
 	@Nullable
 	private BufferedImage fetchTile(XyzTile tile) {
 		int numTiles = 1 << tile.z();
@@ -131,56 +330,58 @@ public class XyzMapProvider implements MapProvider, Closeable {
 			return null;
 		}
 
-		String tempDir = System.getProperty("java.io.tmpdir");
-		String fileName = String.format("%s_%d_%d_%d.png",
-				tileProvider.getCachePrefix(), tile.x(), tile.y(), tile.z());
-		File cacheFile = new File(tempDir + File.separator + fileName);
+		String prefix = tileProvider.getCachePrefix();
+		BufferedImage cached = tileCache.get(prefix, tile);
+		if (cached != null) {
+			return cached;
+		}
 
-		if (cacheFile.exists()) {
-			try {
-				return ImageIO.read(cacheFile);
-			} catch (IOException e) {
-				log.warn("Corrupt cached tile {}, re-fetching", cacheFile);
-			}
+		BufferedImage stored = readFromStore(prefix, tile);
+		if (stored != null) {
+			tileCache.put(prefix, tile, stored);
+			return stored;
 		}
 
 		BufferedImage image = tileProvider.fetchTile(tile);
 		if (image != null) {
-			writeToCache(image, cacheFile);
+			writeToStore(prefix, tile, image);
+			tileCache.put(prefix, tile, image);
 		}
 		return image;
 	}
 
-	private void writeToCache(BufferedImage image, File target) {
-		File tmp = new File(target.getPath() + ".tmp");
+	@Nullable
+	private BufferedImage readFromStore(String prefix, XyzTile tile) {
+		if (tileStore == null) {
+			return null;
+		}
 		try {
-			if (!ImageIO.write(image, "png", tmp)) {
+			byte[] data = tileStore.read(prefix, tile);
+			return data != null
+					? ImageIO.read(new ByteArrayInputStream(data))
+					: null;
+		} catch (IOException e) {
+			log.warn("Corrupt stored tile {}, re-fetching", tile);
+			return null;
+		}
+	}
+
+	private void writeToStore(String prefix, XyzTile tile, BufferedImage image) {
+		if (tileStore == null) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (!ImageIO.write(image, "png", out)) {
 				log.warn("No PNG writer available, tile will not be cached");
 				return;
 			}
-			try {
-				Files.move(tmp.toPath(), target.toPath(),
-						StandardCopyOption.REPLACE_EXISTING,
-						StandardCopyOption.ATOMIC_MOVE);
-			} catch (AtomicMoveNotSupportedException e) {
-				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
-			}
+			tileStore.write(prefix, tile, out.toByteArray());
 		} catch (IOException e) {
-			log.warn("Failed to cache tile {}", target, e);
-			tmp.delete();
+			log.warn("Failed to cache tile {}", tile, e);
 		}
 	}
 
-	private XyzTile latLonToTile(LatLon latLon, int zoom) {
-		double lat = latLon.getLatDgr();
-		double lon = latLon.getLonDgr();
-		int x = (int) Math.floor((lon + 180) / 360 * Math.pow(2, zoom));
-		int y = (int) Math.floor(
-				(1 - Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI)
-						/ 2 * Math.pow(2, zoom));
-		return new XyzTile(x, y, zoom);
-	}
-
 	private LatLon getTileCenter(XyzTile tile) {
 		Point2D tileCenter = new Point2D(
 				GoogleCoordUtils.TILE_SIZE * (tile.x() + 0.5),
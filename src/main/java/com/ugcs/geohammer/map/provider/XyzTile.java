@@ -1,3 +1,17 @@
 package com.ugcs.geohammer.map.provider;
 
-public record XyzTile(int x, int y, int z) {}
+import com.ugcs.geohammer.model.LatLon;
+
+public record XyzTile(int x, int y, int z) {
+
+	// tile containing the point at the zoom level
+	public static XyzTile fromLatLon(LatLon latLon, int zoom) {
+		double lat = latLon.getLatDgr();
+		double lon = latLon.getLonDgr();
+		int x = (int) Math.floor((lon + 180) / 360 * Math.pow(2, zoom));
+		int y = (int) Math.floor(
+				(1 - Math.log(Math.tan(Math.toRadians(lat)) + 1 / Math.cos(Math.toRadians(lat))) / Math.PI)
+						/ 2 * Math.pow(2, zoom));
+		return new XyzTile(x, y, zoom);
+	}
+}
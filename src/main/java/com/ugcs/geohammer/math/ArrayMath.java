@@ -1,5 +1,7 @@
 package com.ugcs.geohammer.math;
 
+import com.ugcs.geohammer.util.Check;
+
 public class ArrayMath {
 	public static void arraySum(float[] avg, float[] add) {
 		for (int i = 0; i < avg.length && i < add.length; i++) {
@@ -19,5 +21,43 @@ public class ArrayMath {
 		}
 	}
 
+	// k-th smallest value of the range [from, to), the range is
+	// reordered so that values before k are not greater and values
+	// after k are not less than the result
+	public static float select(float[] values, int from, int to, int k) {
+		Check.condition(from <= k && k < to && to <= values.length);
+
+		int left = from;
+		int right = to - 1;
+		while (left < right) {
+			float pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					i++;
+				}
+				while (values[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					float t = values[i];
+					values[i] = values[j];
+					values[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+		return values[k];
+	}
+
 
 }
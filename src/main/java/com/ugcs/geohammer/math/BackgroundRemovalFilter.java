@@ -18,10 +18,12 @@ public class BackgroundRemovalFilter {
 	public void subtractProfile(List<Trace> lst, float[] avg) {
         for (Trace trace : lst) {
             int n = Math.min(avg.length, trace.numSamples());
-			for (int i = 0; i < n; i++) {
-				float value = trace.getSample(i) - avg[i];
-				trace.setSample(i, value);
-			}
+            int from = trace.getRangeOffset();
+            trace.writeSamples(samples -> {
+				for (int i = 0; i < n; i++) {
+					samples[from + i] -= avg[i];
+				}
+            });
         }
 	}
 
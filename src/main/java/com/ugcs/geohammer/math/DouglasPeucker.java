@@ -4,6 +4,7 @@ import javafx.geometry.Point2D;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -67,6 +68,86 @@ public final class DouglasPeucker {
         return selected;
     }
 
+    // primitive variant for the first length points of xs and ys,
+    // selects the same indices as the list variant
+    public static int[] approximatePolyline(
+            double[] xs, double[] ys, int length, double threshold, int minPoints) {
+        int n = length;
+        // omit last point if polyline is closed
+        if (n > 1 && xs[0] == xs[n - 1] && ys[0] == ys[n - 1]) {
+            n = n - 1;
+        }
+        if (n < 3) {
+            int[] selected = new int[n];
+            for (int i = 0; i < n; i++) {
+                selected[i] = i;
+            }
+            return selected;
+        }
+        int[] selected = new int[n];
+        int numSelected = 0;
+        selected[numSelected++] = 0;
+        selected[numSelected++] = n - 1;
+        // each selected point adds two intervals
+        int[] queueA = new int[2 * n];
+        int[] queueB = new int[2 * n];
+        int head = 0;
+        int tail = 0;
+        queueA[tail] = 0;
+        queueB[tail] = n - 1;
+        tail++;
+        while (head < tail) {
+            int a = queueA[head];
+            int b = queueB[head];
+            head++;
+            int pivot = maxDeviation(xs, ys, a, b,
+                    numSelected < minPoints ? 0.0 : threshold);
+            if (pivot != -1) {
+                selected[numSelected++] = pivot;
+                queueA[tail] = a;
+                queueB[tail] = pivot;
+                tail++;
+                queueA[tail] = pivot;
+                queueB[tail] = b;
+                tail++;
+            }
+        }
+        Arrays.sort(selected, 0, numSelected);
+        if (numSelected == 2) {
+            double dx = xs[selected[1]] - xs[selected[0]];
+            double dy = ys[selected[1]] - ys[selected[0]];
+            if (Math.sqrt(dx * dx + dy * dy) < threshold) {
+                numSelected = 1;
+            }
+        }
+        return Arrays.copyOf(selected, numSelected);
+    }
+
+    static int maxDeviation(double[] xs, double[] ys, int a, int b, double threshold) {
+        double ux = xs[b] - xs[a];
+        double uy = ys[b] - ys[a];
+        double ul = Math.sqrt(ux * ux + uy * uy);
+        double unx = ul < 1e-9 ? 0 : ux * (1.0 / ul);
+        double uny = ul < 1e-9 ? 0 : uy * (1.0 / ul);
+
+        double maxd = 0.0;
+        int maxi = -1;
+        for (int i = a + 1; i < b; i++) {
+            double apx = xs[i] - xs[a];
+            double apy = ys[i] - ys[a];
+            double d = ul < 1e-9
+                    ? Math.sqrt(apx * apx + apy * apy) // interval is close to point
+                    : Math.abs(apx * uny - apy * unx); // = ap dot ortho(un)
+            if (d > maxd) {
+                maxd = d;
+                maxi = i;
+            }
+        }
+        return maxd >= threshold
+                ? maxi
+                : -1;
+    }
+
     static int maxDeviation(List<Point2D> points, Interval interval, double threshold) {
         Point2D a = points.get(interval.a);
         Point2D b = points.get(interval.b);
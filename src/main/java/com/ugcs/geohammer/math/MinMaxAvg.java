@@ -47,6 +47,20 @@ public class MinMaxAvg {
 		return !first;
 	}
 
+	public void add(MinMaxAvg other) {
+		if (other.first) {
+			return;
+		}
+		if (first) {
+			copyFrom(other);
+			return;
+		}
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		sum += other.sum;
+		cnt += other.cnt;
+	}
+
 	public void copyFrom(MinMaxAvg other) {
 		this.sum = other.sum;
 		this.cnt = other.cnt;
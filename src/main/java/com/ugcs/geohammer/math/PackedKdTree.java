@@ -0,0 +1,181 @@
+package com.ugcs.geohammer.math;
+
+import java.util.function.IntConsumer;
+
+import com.ugcs.geohammer.util.Check;
+
+// Static 2d-tree over primitive coordinates. Points are ordered
+// so that the median of each range is the node splitting it,
+// alternating x and y by depth; there are no node objects.
+// Queries return point indices of the source arrays.
+public final class PackedKdTree {
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    // source indices of points in tree order
+    private final int[] order;
+
+    public PackedKdTree(double[] xs, double[] ys, int length) {
+        Check.condition(length >= 0 && length <= xs.length && length <= ys.length);
+
+        this.xs = new double[length];
+        this.ys = new double[length];
+        this.order = new int[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        build(xs, ys, 0, length, 0);
+        for (int i = 0; i < length; i++) {
+            this.xs[i] = xs[order[i]];
+            this.ys[i] = ys[order[i]];
+        }
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    private void build(double[] xs, double[] ys, int from, int to, int depth) {
+        while (to - from > 1) {
+            int mid = (from + to) >>> 1;
+            select(depth % 2 == 0 ? xs : ys, from, to, mid);
+            build(xs, ys, from, mid, depth + 1);
+            from = mid + 1;
+            depth++;
+        }
+    }
+
+    // partially orders the range so that the k-th element is in place
+    private void select(double[] values, int from, int to, int k) {
+        int left = from;
+        int right = to - 1;
+        while (left < right) {
+            double pivot = values[order[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[order[i]] < pivot) {
+                    i++;
+                }
+                while (values[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // index of the point nearest to (x, y) not farther than
+    // the max distance, or -1 when there is no such point
+    public int nearest(double x, double y, double maxDistance) {
+        Nearest nearest = new Nearest(x, y, maxDistance * maxDistance);
+        nearest(nearest, 0, order.length, 0);
+        return nearest.index >= 0 ? order[nearest.index] : -1;
+    }
+
+    private static final class Nearest {
+
+        final double x;
+
+        final double y;
+
+        double distance2;
+
+        int index = -1;
+
+        Nearest(double x, double y, double distance2) {
+            this.x = x;
+            this.y = y;
+            this.distance2 = distance2;
+        }
+    }
+
+    private void nearest(Nearest nearest, int from, int to, int depth) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        double dx = xs[mid] - nearest.x;
+        double dy = ys[mid] - nearest.y;
+        double distance2 = dx * dx + dy * dy;
+        if (distance2 <= nearest.distance2) {
+            nearest.distance2 = distance2;
+            nearest.index = mid;
+        }
+        // distance from the query point to the splitting line
+        double axisDistance = depth % 2 == 0 ? -dx : -dy;
+        boolean lower = axisDistance < 0;
+        if (lower) {
+            nearest(nearest, from, mid, depth + 1);
+        } else {
+            nearest(nearest, mid + 1, to, depth + 1);
+        }
+        if (axisDistance * axisDistance <= nearest.distance2) {
+            if (lower) {
+                nearest(nearest, mid + 1, to, depth + 1);
+            } else {
+                nearest(nearest, from, mid, depth + 1);
+            }
+        }
+    }
+
+    // indices of points within the radius from (x, y)
+    public void inRadius(double x, double y, double radius, IntConsumer consumer) {
+        Check.notNull(consumer);
+        double radius2 = radius * radius;
+        inBounds(x - radius, y - radius, x + radius, y + radius, i -> {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            if (dx * dx + dy * dy <= radius2) {
+                consumer.accept(order[i]);
+            }
+        }, 0, order.length, 0);
+    }
+
+    // indices of points within the bounds, edges included
+    public void inBounds(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        Check.notNull(consumer);
+        inBounds(minX, minY, maxX, maxY, i -> consumer.accept(order[i]), 0, order.length, 0);
+    }
+
+    private void inBounds(double minX, double minY, double maxX, double maxY,
+            IntConsumer consumer, int from, int to, int depth) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            double x = xs[mid];
+            double y = ys[mid];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                consumer.accept(mid);
+            }
+            double value = depth % 2 == 0 ? x : y;
+            double min = depth % 2 == 0 ? minX : minY;
+            double max = depth % 2 == 0 ? maxX : maxY;
+            boolean visitLower = min <= value;
+            boolean visitUpper = max >= value;
+            if (visitLower && visitUpper) {
+                inBounds(minX, minY, maxX, maxY, consumer, from, mid, depth + 1);
+                from = mid + 1;
+            } else if (visitLower) {
+                to = mid;
+            } else {
+                from = mid + 1;
+            }
+            depth++;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ugcs.geohammer.math.sample;
+
+import java.nio.ByteOrder;
+
+// Bulk conversions between encoded sample bytes and float samples.
+// All implementations produce identical bits for the same input.
+public interface SampleConverter {
+
+    // 16-bit integers: value = (unsigned ? s & 0xffff : s) + bias
+    void decodeInt16(byte[] src, int srcOffset, ByteOrder order, boolean unsigned, int bias,
+            float[] dst, int dstOffset, int length);
+
+    // 32-bit integers: value = (float) i
+    void decodeInt32(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length);
+
+    // IEEE 754 floats: value = f * scale
+    void decodeFloat32(byte[] src, int srcOffset, ByteOrder order, float scale,
+            float[] dst, int dstOffset, int length);
+
+    // IBM System/360 hex floats
+    void decodeIbm(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length);
+
+    // 16-bit integers: s = (short) ((int) value + bias)
+    void encodeInt16(float[] src, int srcOffset, int bias,
+            byte[] dst, int dstOffset, ByteOrder order, int length);
+
+    // 32-bit integers: i = (int) value
+    void encodeInt32(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length);
+
+    // IEEE 754 floats: f = value / scale
+    void encodeFloat32(float[] src, int srcOffset, float scale,
+            byte[] dst, int dstOffset, ByteOrder order, int length);
+
+    // IBM System/360 hex floats
+    void encodeIbm(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length);
+
+    // vectorized converter when the jdk.incubator.vector module
+    // is available at runtime, scalar converter otherwise
+    static SampleConverter getInstance() {
+        return SampleConverters.INSTANCE;
+    }
+}
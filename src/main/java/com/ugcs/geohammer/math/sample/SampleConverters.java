@@ -0,0 +1,31 @@
+package com.ugcs.geohammer.math.sample;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class SampleConverters {
+
+    private static final Logger log = LoggerFactory.getLogger(SampleConverters.class);
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    static final SampleConverter INSTANCE = create();
+
+    private SampleConverters() {
+    }
+
+    // vector classes are loaded only when the module is present
+    static boolean isVectorSupported() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()
+                && VectorSampleConverter.isSupported();
+    }
+
+    private static SampleConverter create() {
+        if (isVectorSupported()) {
+            return new VectorSampleConverter();
+        }
+        log.info("Module {} is not available or vectors are too narrow, using scalar sample converter",
+                VECTOR_MODULE);
+        return new ScalarSampleConverter();
+    }
+}
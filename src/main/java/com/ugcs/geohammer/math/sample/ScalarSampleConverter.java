@@ -0,0 +1,133 @@
+package com.ugcs.geohammer.math.sample;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.github.thecoldwine.sigrun.converters.IBM360Converter;
+
+public class ScalarSampleConverter implements SampleConverter {
+
+    private static final int IBM_SIGN_MASK = 0x80000000;
+
+    private static final int IBM_FRAC_MASK = 0x00FFFFFF;
+
+    private static final int FRACTION_BITS = 24;
+
+    private static final int MAX_EXPONENT = 127;
+
+    private static ByteBuffer wrap(byte[] bytes, int offset, int length, ByteOrder order) {
+        return ByteBuffer.wrap(bytes, offset, length).order(order);
+    }
+
+    @Override
+    public void decodeInt16(byte[] src, int srcOffset, ByteOrder order, boolean unsigned, int bias,
+            float[] dst, int dstOffset, int length) {
+        ByteBuffer buffer = wrap(src, srcOffset, 2 * length, order);
+        for (int i = 0; i < length; i++) {
+            short value = buffer.getShort();
+            dst[dstOffset + i] = (unsigned ? value & 0xFFFF : value) + bias;
+        }
+    }
+
+    @Override
+    public void decodeInt32(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length) {
+        ByteBuffer buffer = wrap(src, srcOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = buffer.getInt();
+        }
+    }
+
+    @Override
+    public void decodeFloat32(byte[] src, int srcOffset, ByteOrder order, float scale,
+            float[] dst, int dstOffset, int length) {
+        ByteBuffer buffer = wrap(src, srcOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = buffer.getFloat() * scale;
+        }
+    }
+
+    @Override
+    public void decodeIbm(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length) {
+        ByteBuffer buffer = wrap(src, srcOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = Float.intBitsToFloat(IBM360Converter.convert(buffer.getInt()));
+        }
+    }
+
+    @Override
+    public void encodeInt16(float[] src, int srcOffset, int bias,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        ByteBuffer buffer = wrap(dst, dstOffset, 2 * length, order);
+        for (int i = 0; i < length; i++) {
+            buffer.putShort((short) ((int) src[srcOffset + i] + bias));
+        }
+    }
+
+    @Override
+    public void encodeInt32(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        ByteBuffer buffer = wrap(dst, dstOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            buffer.putInt((int) src[srcOffset + i]);
+        }
+    }
+
+    @Override
+    public void encodeFloat32(float[] src, int srcOffset, float scale,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        ByteBuffer buffer = wrap(dst, dstOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            buffer.putFloat(src[srcOffset + i] / scale);
+        }
+    }
+
+    @Override
+    public void encodeIbm(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        ByteBuffer buffer = wrap(dst, dstOffset, 4 * length, order);
+        for (int i = 0; i < length; i++) {
+            buffer.putInt(toIbmBits(src[srcOffset + i]));
+        }
+    }
+
+    // IEEE 754 float -> IBM System/360 hex float bits
+    static int toIbmBits(float value) {
+        if (value == 0f) {
+            return 0;
+        }
+        int sign = 0;
+        double v = value;
+        if (v < 0) {
+            sign = IBM_SIGN_MASK;
+            v = -v;
+        }
+        // normalize so that v is in [1/16, 1): value = v * 16^(exp - 64)
+        int exp = 64;
+        while (v >= 1.0) {
+            v /= 16.0;
+            exp++;
+        }
+        while (v < 1.0 / 16.0) {
+            v *= 16.0;
+            exp--;
+        }
+        int fraction = (int) Math.round(v * (1 << FRACTION_BITS));
+        if (fraction >= (1 << FRACTION_BITS)) {
+            // rounding pushed the fraction past the top hex digit; renormalize
+            fraction >>>= 4;
+            exp++;
+        }
+        if (exp <= 0) {
+            // underflow - return properly signed zero
+            return sign;
+        }
+        if (exp > MAX_EXPONENT) {
+            // overflow - clamp to the largest representable magnitude
+            exp = MAX_EXPONENT;
+            fraction = IBM_FRAC_MASK;
+        }
+        return sign | (exp << FRACTION_BITS) | (fraction & IBM_FRAC_MASK);
+    }
+}
@@ -0,0 +1,214 @@
+package com.ugcs.geohammer.math.sample;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+// Converts full vectors of samples in lanes and leaves
+// the tail shorter than a vector to the scalar converter.
+// Requires jdk.incubator.vector module at runtime.
+public class VectorSampleConverter implements SampleConverter {
+
+    private static final int IBM_SIGN_MASK = 0x80000000;
+
+    private static final int IBM_FRAC_MASK = 0x00FFFFFF;
+
+    // narrower vectors are slower than the scalar loops
+    private static final int MIN_VECTOR_BITS = 128;
+
+    private final ScalarSampleConverter scalar = new ScalarSampleConverter();
+
+    private final VectorSpecies<Float> floats = FloatVector.SPECIES_PREFERRED;
+
+    private final VectorSpecies<Integer> ints;
+
+    // bytes of int lanes
+    private final VectorSpecies<Byte> intBytes;
+
+    // byte order of lanes reinterpreted from bytes
+    private final ByteOrder laneOrder;
+
+    private final VectorShuffle<Byte> swapInts;
+
+    public VectorSampleConverter() {
+        VectorShape shape = floats.vectorShape();
+        // callers check isSupported() first
+        if (!isSupported()) {
+            throw new IllegalStateException("Vector shape is too small: " + shape);
+        }
+
+        ints = VectorSpecies.of(int.class, shape);
+        intBytes = VectorSpecies.of(byte.class, shape);
+
+        byte[] probe = new byte[intBytes.length()];
+        for (int i = 0; i < probe.length; i++) {
+            probe[i] = (byte) i;
+        }
+        int lane = ByteVector.fromArray(intBytes, probe, 0).reinterpretAsInts().lane(0);
+        laneOrder = lane == 0x03020100 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+        swapInts = VectorShuffle.fromOp(intBytes, i -> (i & ~3) + 3 - (i & 3));
+    }
+
+    // preferred vectors of the platform are wide enough,
+    // requires jdk.incubator.vector module
+    public static boolean isSupported() {
+        return FloatVector.SPECIES_PREFERRED.vectorBitSize() >= MIN_VECTOR_BITS;
+    }
+
+    private IntVector loadInts(byte[] src, int offset, ByteOrder order) {
+        ByteVector bytes = ByteVector.fromArray(intBytes, src, offset);
+        if (order != laneOrder) {
+            bytes = bytes.rearrange(swapInts);
+        }
+        return bytes.reinterpretAsInts();
+    }
+
+    private void storeInts(IntVector values, byte[] dst, int offset, ByteOrder order) {
+        ByteVector bytes = values.reinterpretAsBytes();
+        if (order != laneOrder) {
+            bytes = bytes.rearrange(swapInts);
+        }
+        bytes.intoArray(dst, offset);
+    }
+
+    // 16-bit lanes need cross-shape conversions that are slower
+    // than the scalar loop on current JDKs, those stay scalar
+
+    @Override
+    public void decodeInt16(byte[] src, int srcOffset, ByteOrder order, boolean unsigned, int bias,
+            float[] dst, int dstOffset, int length) {
+        scalar.decodeInt16(src, srcOffset, order, unsigned, bias, dst, dstOffset, length);
+    }
+
+    @Override
+    public void encodeInt16(float[] src, int srcOffset, int bias,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        scalar.encodeInt16(src, srcOffset, bias, dst, dstOffset, order, length);
+    }
+
+    @Override
+    public void decodeInt32(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            ((FloatVector) loadInts(src, srcOffset + 4 * i, order).convert(VectorOperators.I2F, 0))
+                    .intoArray(dst, dstOffset + i);
+        }
+        scalar.decodeInt32(src, srcOffset + 4 * i, order,
+                dst, dstOffset + i, length - i);
+    }
+
+    @Override
+    public void decodeFloat32(byte[] src, int srcOffset, ByteOrder order, float scale,
+            float[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            loadInts(src, srcOffset + 4 * i, order)
+                    .reinterpretAsFloats()
+                    .mul(scale)
+                    .intoArray(dst, dstOffset + i);
+        }
+        scalar.decodeFloat32(src, srcOffset + 4 * i, order, scale,
+                dst, dstOffset + i, length - i);
+    }
+
+    @Override
+    public void decodeIbm(byte[] src, int srcOffset, ByteOrder order,
+            float[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            IntVector bits = loadInts(src, srcOffset + 4 * i, order);
+            IntVector sign = bits.and(IBM_SIGN_MASK);
+            IntVector exponent = bits.lanewise(VectorOperators.LSHR, 24).and(0x7F);
+            IntVector fraction = bits.and(IBM_FRAC_MASK);
+            // fraction fits float mantissa, conversion normalizes it exactly:
+            // value = fraction * 2^(4 * (exponent - 64) - 24)
+            IntVector normalized = ((FloatVector) fraction.convert(VectorOperators.I2F, 0))
+                    .reinterpretAsInts();
+            IntVector ieeeExponent = normalized.lanewise(VectorOperators.LSHR, 23)
+                    .add(exponent.lanewise(VectorOperators.LSHL, 2))
+                    .sub(280);
+            IntVector result = sign
+                    .or(ieeeExponent.lanewise(VectorOperators.LSHL, 23))
+                    .or(normalized.and(0x007FFFFF));
+            // overflow clamps to the max magnitude, underflow flushes to zero
+            result = result.blend(sign.or(0x7F7FFFFF), ieeeExponent.compare(VectorOperators.GT, 254));
+            result = result.blend(0, ieeeExponent.compare(VectorOperators.LE, 0)
+                    .or(fraction.compare(VectorOperators.EQ, 0)));
+            result.reinterpretAsFloats().intoArray(dst, dstOffset + i);
+        }
+        scalar.decodeIbm(src, srcOffset + 4 * i, order,
+                dst, dstOffset + i, length - i);
+    }
+
+    @Override
+    public void encodeInt32(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            IntVector values = (IntVector) FloatVector.fromArray(floats, src, srcOffset + i)
+                    .convert(VectorOperators.F2I, 0);
+            storeInts(values, dst, dstOffset + 4 * i, order);
+        }
+        scalar.encodeInt32(src, srcOffset + i,
+                dst, dstOffset + 4 * i, order, length - i);
+    }
+
+    @Override
+    public void encodeFloat32(float[] src, int srcOffset, float scale,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            IntVector values = FloatVector.fromArray(floats, src, srcOffset + i)
+                    .div(scale)
+                    .reinterpretAsInts();
+            storeInts(values, dst, dstOffset + 4 * i, order);
+        }
+        scalar.encodeFloat32(src, srcOffset + i, scale,
+                dst, dstOffset + 4 * i, order, length - i);
+    }
+
+    @Override
+    public void encodeIbm(float[] src, int srcOffset,
+            byte[] dst, int dstOffset, ByteOrder order, int length) {
+        int i = 0;
+        for (int bound = floats.loopBound(length); i < bound; i += floats.length()) {
+            IntVector bits = FloatVector.fromArray(floats, src, srcOffset + i).reinterpretAsInts();
+            IntVector exponent = bits.lanewise(VectorOperators.LSHR, 23).and(0xFF);
+            VectorMask<Integer> zero = bits.and(0x7FFFFFFF).compare(VectorOperators.EQ, 0);
+            VectorMask<Integer> special = exponent.compare(VectorOperators.EQ, 0)
+                    .or(exponent.compare(VectorOperators.EQ, 0xFF));
+            if (special.andNot(zero).anyTrue()) {
+                // subnormal, infinite or NaN values
+                scalar.encodeIbm(src, srcOffset + i,
+                        dst, dstOffset + 4 * i, order, floats.length());
+                continue;
+            }
+            // value = mantissa * 2^(q - 24), q = exponent - 126;
+            // hex exponent is ceil(q / 4), the mantissa is shifted right
+            // by the remaining 0..3 bits with rounding half up
+            IntVector mantissa = bits.and(0x007FFFFF).or(0x00800000);
+            IntVector q = exponent.sub(126);
+            IntVector hexExponent = q.add(3).lanewise(VectorOperators.ASHR, 2);
+            IntVector shift = hexExponent.lanewise(VectorOperators.LSHL, 2).sub(q);
+            IntVector half = IntVector.broadcast(ints, 1)
+                    .lanewise(VectorOperators.LSHL, shift)
+                    .lanewise(VectorOperators.LSHR, 1);
+            IntVector fraction = mantissa.add(half).lanewise(VectorOperators.LSHR, shift);
+            IntVector result = bits.and(IBM_SIGN_MASK)
+                    .or(hexExponent.add(64).lanewise(VectorOperators.LSHL, 24))
+                    .or(fraction);
+            storeInts(result.blend(0, zero), dst, dstOffset + 4 * i, order);
+        }
+        scalar.encodeIbm(src, srcOffset + i,
+                dst, dstOffset + 4 * i, order, length - i);
+    }
+}
@@ -2,9 +2,12 @@ package com.ugcs.geohammer.model;
 
 import com.ugcs.geohammer.math.GoogleCoordUtils;
 import com.ugcs.geohammer.map.provider.MapProvider;
+import com.ugcs.geohammer.util.Check;
 import javafx.geometry.Point2D;
 import org.jspecify.annotations.Nullable;
 
+import java.util.Arrays;
+
 public class MapField {
 
 	private static final double R = 6378137;
@@ -27,6 +30,14 @@ public class MapField {
 	@Nullable
 	private MapProvider mapProvider;
 
+	// origin and scale of the current zoom and scene center,
+	// reset when any of them changes
+	@Nullable
+	private Projection projection;
+
+	private record Projection(double originX, double originY, double scale) {
+	}
+
 	public MapField() {		
 	}
 	
@@ -39,6 +50,7 @@ public class MapField {
 		this.pathRb = field.pathRb;
 		
 		this.mapProvider = field.mapProvider;
+		this.projection = field.projection;
 	}
 
 	public boolean isActive() {
@@ -46,17 +58,97 @@ public class MapField {
 	}
 	
 	public Point2D latLonToScreen(@Nullable LatLon latlon) {
-		LatLon sceneCenter = getSceneCenter();
-		if (latlon == null || sceneCenter == null) {
+		Projection projection = getProjection();
+		if (latlon == null || projection == null) {
 			return new Point2D(0, 0);
 		}
+		return new Point2D(
+				lonToScreenX(projection, latlon.getLonDgr()),
+				latToScreenY(projection, latlon.getLatDgr()));
+	}
 
-		Point2D origin = getScreenOrigin(sceneCenter);
-		Point2D p2d = GoogleCoordUtils.latLonToPoint(latlon, zoom);
+	// projects lats and lons of the first length points into xs and ys;
+	// all points are at the origin when the field is not active
+	public void latLonToScreen(double[] lats, double[] lons, double[] xs, double[] ys, int length) {
+		Check.condition(length <= lats.length && length <= lons.length);
+		Check.condition(length <= xs.length && length <= ys.length);
 
-		return new Point2D(
-			(p2d.getX() - origin.getX()),
-			(p2d.getY() - origin.getY()));
+		Projection projection = getProjection();
+		if (projection == null) {
+			Arrays.fill(xs, 0, length, 0);
+			Arrays.fill(ys, 0, length, 0);
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			xs[i] = lonToScreenX(projection, lons[i]);
+			ys[i] = latToScreenY(projection, lats[i]);
+		}
+	}
+
+	public double lonToScreenX(double lon) {
+		Projection projection = getProjection();
+		return projection != null ? lonToScreenX(projection, lon) : 0;
+	}
+
+	public double latToScreenY(double lat) {
+		Projection projection = getProjection();
+		return projection != null ? latToScreenY(projection, lat) : 0;
+	}
+
+	// world coordinates are mercator pixels at zoom 0,
+	// a screen pixel at zoom z is 2^-z world units
+	public double worldToScreenX(double worldX) {
+		Projection projection = getProjection();
+		return projection != null ? worldX * projection.scale() - projection.originX() : 0;
+	}
+
+	public double worldToScreenY(double worldY) {
+		Projection projection = getProjection();
+		return projection != null ? worldY * projection.scale() - projection.originY() : 0;
+	}
+
+	public double screenToWorldX(double screenX) {
+		Projection projection = getProjection();
+		return projection != null ? (screenX + projection.originX()) / projection.scale() : 0;
+	}
+
+	public double screenToWorldY(double screenY) {
+		Projection projection = getProjection();
+		return projection != null ? (screenY + projection.originY()) / projection.scale() : 0;
+	}
+
+	// same arithmetic as GoogleCoordUtils.latLonToPoint
+	public static double lonToWorldX(double lon) {
+		return GoogleCoordUtils.TILE_SIZE * (0.5 + lon / 360);
+	}
+
+	public static double latToWorldY(double lat) {
+		double siny = Math.sin(lat * Math.PI / 180);
+		siny = Math.clamp(siny, -0.9999, 0.9999);
+		return GoogleCoordUtils.TILE_SIZE * (0.5 - Math.log((1 + siny) / (1 - siny)) / (4 * Math.PI));
+	}
+
+	private static double lonToScreenX(Projection projection, double lon) {
+		return lonToWorldX(lon) * projection.scale() - projection.originX();
+	}
+
+	private static double latToScreenY(Projection projection, double lat) {
+		return latToWorldY(lat) * projection.scale() - projection.originY();
+	}
+
+	@Nullable
+	private Projection getProjection() {
+		Projection projection = this.projection;
+		if (projection == null) {
+			LatLon sceneCenter = getSceneCenter();
+			if (sceneCenter == null) {
+				return null;
+			}
+			Point2D origin = getScreenOrigin(sceneCenter);
+			projection = new Projection(origin.getX(), origin.getY(), Math.pow(2, zoom));
+			this.projection = projection;
+		}
+		return projection;
 	}
 
 	public LatLon screenTolatLon(Point2D point) {
@@ -86,6 +178,7 @@ public class MapField {
 	
 	public void setZoom(double zoom) {
 		this.zoom = Math.clamp(zoom, MIN_ZOOM, MAX_ZOOM);
+		this.projection = null;
 	}
 
 	@Nullable
@@ -99,6 +192,7 @@ public class MapField {
 		} else {
 			this.sceneCenter = null;
 		}
+		this.projection = null;
 	}	
 
 	@Nullable
@@ -108,6 +202,7 @@ public class MapField {
 
 	public void setPathCenter(LatLon pathCenter) {
 		this.pathCenter = pathCenter;
+		this.projection = null;
 	}	
 
 	public void setPathEdgeLL(LatLon lt, LatLon rb) {
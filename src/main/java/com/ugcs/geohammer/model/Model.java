@@ -17,6 +17,7 @@ import com.ugcs.geohammer.format.GeoData;
 import com.ugcs.geohammer.format.SgyFile;
 import com.ugcs.geohammer.format.TraceFile;
 import com.ugcs.geohammer.format.csv.CsvFile;
+import com.ugcs.geohammer.format.gpr.GprFile;
 import com.ugcs.geohammer.chart.gpr.GPRChart;
 import com.ugcs.geohammer.format.nmea.NmeaFile;
 import com.ugcs.geohammer.format.svlog.SonarFile;
@@ -25,6 +26,7 @@ import com.ugcs.geohammer.model.element.BaseObject;
 import com.ugcs.geohammer.model.element.FoundPlace;
 import com.ugcs.geohammer.model.event.DepthRangeUpdatedEvent;
 import com.ugcs.geohammer.model.event.FileClosedEvent;
+import com.ugcs.geohammer.model.event.FileOpenedEvent;
 import com.ugcs.geohammer.model.event.BaseEvent;
 import com.ugcs.geohammer.model.event.FileSelectedEvent;
 import com.ugcs.geohammer.model.event.FileUpdatedEvent;
@@ -33,7 +35,6 @@ import com.ugcs.geohammer.model.event.WhatChanged;
 import com.ugcs.geohammer.util.Strings;
 import com.ugcs.geohammer.util.Templates;
 import com.ugcs.geohammer.util.Nulls;
-import com.ugcs.geohammer.util.Traces;
 import javafx.scene.layout.*;
 import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
@@ -69,6 +70,8 @@ public class Model implements InitializingBean {
 
 	private final MapField field = new MapField();
 
+	private final TraceIndex traceIndex = new TraceIndex();
+
 	private final FileManager fileManager;
 
 	private final List<BaseObject> auxElements = new ArrayList<>();
@@ -110,6 +113,10 @@ public class Model implements InitializingBean {
 		return field;
 	}
 
+	public TraceIndex getTraceIndex() {
+		return traceIndex;
+	}
+
 	public FileManager getFileManager() {
 		return fileManager;
 	}
@@ -524,6 +531,16 @@ public class Model implements InitializingBean {
 
 	@EventListener
 	private void onChange(WhatChanged event) {
+		if (event.isTraceCut()) {
+			traceIndex.clear();
+		}
+		if (event.isTraceCut() || event.isTraceValues()) {
+			charts.values().forEach(chart -> {
+				if (chart instanceof GPRChart gprChart) {
+					gprChart.tracesChanged();
+				}
+			});
+		}
 		if (event.isJustdraw() || event.isTraceCut() || event.isTraceValues()) {
 			charts.values().forEach(chart ->
 					Platform.runLater(chart::repaint)
@@ -540,6 +557,24 @@ public class Model implements InitializingBean {
 	private void fileClosed(FileClosedEvent event) {
 		Chart chart = getChart(event.getFile());
 		clearSelectedTrace(chart);
+		if (event.getFile() != null) {
+			traceIndex.invalidate(event.getFile());
+		}
+		if (event.getFile() instanceof GprFile gprFile) {
+			gprFile.close();
+		}
+	}
+
+	@EventListener
+	private void fileOpened(FileOpenedEvent event) {
+		traceIndex.retain(fileManager.getFiles());
+	}
+
+	@EventListener
+	private void fileUpdated(FileUpdatedEvent event) {
+		if (event.getFile() != null) {
+			traceIndex.invalidate(event.getFile());
+		}
 	}
 
 	@EventListener
@@ -603,7 +638,7 @@ public class Model implements InitializingBean {
 		if (location == null) {
 			return;
 		}
-		Optional<TraceKey> nearestTrace = Traces.findNearestTraceInFiles(fileManager.getFiles(), location);
+		Optional<TraceKey> nearestTrace = traceIndex.findNearest(fileManager.getFiles(), location);
 		nearestTrace.ifPresent(trace -> {
 			selectTrace(trace, true);
 		});
@@ -628,8 +663,8 @@ public class Model implements InitializingBean {
 			if (Objects.equals(chart, traceChart)) {
 				continue;
 			}
-			Optional<TraceKey> nearestInChart = Traces.findNearestTrace(
-					chart.getFile(),
+			Optional<TraceKey> nearestInChart = traceIndex.findNearest(
+					List.of(chart.getFile()),
 					trace.getLatLon(),
 					traceLookupThreshold);
 			if (nearestInChart.isPresent()) {
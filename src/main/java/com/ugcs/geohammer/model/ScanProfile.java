@@ -10,6 +10,9 @@ public class ScanProfile {
 
 	public int @Nullable [] radius = null;
 	public double maxVal;
+
+	// parameters the intensities were computed for
+	public @Nullable Object key;
 	
 	public ScanProfile(int size) {
 		this(size, false);		
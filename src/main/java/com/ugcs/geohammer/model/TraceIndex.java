@@ -0,0 +1,182 @@
+package com.ugcs.geohammer.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import com.ugcs.geohammer.format.GeoData;
+import com.ugcs.geohammer.format.SgyFile;
+import com.ugcs.geohammer.math.GoogleCoordUtils;
+import com.ugcs.geohammer.math.PackedKdTree;
+import com.ugcs.geohammer.util.Check;
+import com.ugcs.geohammer.util.Nulls;
+import org.jspecify.annotations.Nullable;
+
+// Spatial index of trace locations of open files in map world
+// coordinates (see MapField). Every file has its own tree built
+// on first query; a file is indexed again when its traces change.
+// Distances are in meters and are measured on the sphere, the
+// tree only narrows candidates.
+public final class TraceIndex {
+
+    private static final double EARTH_RADIUS = 6378137;
+
+    // distance is not exactly isotropic in mercator over a region
+    private static final double RADIUS_MARGIN = 1.01;
+
+    // guarded by itself
+    private final Map<SgyFile, FileIndex> files = new IdentityHashMap<>();
+
+    // incremented on invalidation, guarded by files
+    private int version;
+
+    private record FileIndex(List<GeoData> geoData, int numTraces, PackedKdTree tree, int[] traceIndices) {
+
+        boolean matches(SgyFile file) {
+            List<GeoData> values = file.getGeoData();
+            return geoData == values && values != null && numTraces == values.size();
+        }
+    }
+
+    public void invalidate(SgyFile file) {
+        synchronized (files) {
+            files.remove(file);
+            version++;
+        }
+    }
+
+    // drops indices of files not in the list
+    public void retain(Collection<SgyFile> openFiles) {
+        Check.notNull(openFiles);
+        synchronized (files) {
+            Set<SgyFile> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+            retained.addAll(openFiles);
+            files.keySet().retainAll(retained);
+        }
+    }
+
+    public void clear() {
+        synchronized (files) {
+            files.clear();
+            version++;
+        }
+    }
+
+    private FileIndex getIndex(SgyFile file) {
+        int indexVersion;
+        synchronized (files) {
+            FileIndex index = files.get(file);
+            if (index != null && index.matches(file)) {
+                return index;
+            }
+            indexVersion = version;
+        }
+        FileIndex index = buildIndex(file);
+        synchronized (files) {
+            if (indexVersion == version) {
+                files.put(file, index);
+            }
+        }
+        return index;
+    }
+
+    // traces without location are not indexed
+    private static FileIndex buildIndex(SgyFile file) {
+        List<GeoData> geoData = Nulls.toEmpty(file.getGeoData());
+        int n = geoData.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int[] traceIndices = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            GeoData value = geoData.get(i);
+            LatLon latLon = value != null ? value.getLatLon() : null;
+            if (latLon == null) {
+                continue;
+            }
+            xs[k] = MapField.lonToWorldX(latLon.getLonDgr());
+            ys[k] = MapField.latToWorldY(latLon.getLatDgr());
+            traceIndices[k] = i;
+            k++;
+        }
+        PackedKdTree tree = new PackedKdTree(xs, ys, k);
+        return new FileIndex(geoData, n, tree, traceIndices);
+    }
+
+    // world units per meter at the latitude
+    private static double worldScale(double lat) {
+        double cos = Math.max(1e-6, Math.cos(Math.toRadians(lat)));
+        return GoogleCoordUtils.TILE_SIZE / (2 * Math.PI * EARTH_RADIUS * cos);
+    }
+
+    public Optional<TraceKey> findNearest(Iterable<SgyFile> files, LatLon latLon) {
+        return findNearest(files, latLon, Double.MAX_VALUE);
+    }
+
+    public Optional<TraceKey> findNearest(Iterable<SgyFile> files, @Nullable LatLon latLon,
+            double distanceLimit) {
+        if (files == null || latLon == null) {
+            return Optional.empty();
+        }
+        double x = MapField.lonToWorldX(latLon.getLonDgr());
+        double y = MapField.latToWorldY(latLon.getLatDgr());
+        double maxDistance = distanceLimit < Double.MAX_VALUE
+                ? distanceLimit * worldScale(latLon.getLatDgr()) * RADIUS_MARGIN
+                : Double.POSITIVE_INFINITY;
+
+        TraceKey nearest = null;
+        double minDistance = Double.MAX_VALUE;
+        for (SgyFile file : files) {
+            FileIndex index = getIndex(file);
+            int i = index.tree().nearest(x, y, maxDistance);
+            if (i < 0) {
+                continue;
+            }
+            int traceIndex = index.traceIndices()[i];
+            double d = latLon.getDistance(index.geoData().get(traceIndex).getLatLon());
+            if (d < minDistance && d <= distanceLimit) {
+                nearest = new TraceKey(file, traceIndex);
+                minDistance = d;
+            }
+        }
+        return Optional.ofNullable(nearest);
+    }
+
+    public List<TraceKey> findInRadius(Iterable<SgyFile> files, LatLon latLon, double radius) {
+        Check.notNull(files);
+        Check.notNull(latLon);
+
+        double x = MapField.lonToWorldX(latLon.getLonDgr());
+        double y = MapField.latToWorldY(latLon.getLatDgr());
+        double worldRadius = radius * worldScale(latLon.getLatDgr()) * RADIUS_MARGIN;
+
+        List<TraceKey> traces = new ArrayList<>();
+        for (SgyFile file : files) {
+            FileIndex index = getIndex(file);
+            index.tree().inRadius(x, y, worldRadius, i -> {
+                int traceIndex = index.traceIndices()[i];
+                if (latLon.getDistance(index.geoData().get(traceIndex).getLatLon()) <= radius) {
+                    traces.add(new TraceKey(file, traceIndex));
+                }
+            });
+        }
+        return traces;
+    }
+
+    // indices of file traces within world bounds, in no particular order
+    public void findInBounds(SgyFile file, double minX, double minY, double maxX, double maxY,
+            IntConsumer consumer) {
+        Check.notNull(file);
+        Check.notNull(consumer);
+
+        FileIndex index = getIndex(file);
+        int[] traceIndices = index.traceIndices();
+        index.tree().inBounds(minX, minY, maxX, maxY, i -> consumer.accept(traceIndices[i]));
+    }
+}
@@ -0,0 +1,147 @@
+package com.ugcs.geohammer.model.undo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.BufferUnderflowException;
+
+// Bulk puts and gets of fixed-stride columns in snapshot buffers.
+// Each call moves the buffer position past the column.
+final class ColumnBuffers {
+
+    static final int VERSION = 2;
+
+    private ColumnBuffers() {
+    }
+
+    static ByteBuffer allocate(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot is too large: " + size);
+        }
+        return ByteBuffer.allocate((int) size).order(ByteOrder.nativeOrder());
+    }
+
+    static void putHeader(ByteBuffer buffer) {
+        buffer.put(buffer.order() == ByteOrder.LITTLE_ENDIAN ? (byte) 1 : 0);
+        buffer.putInt(VERSION);
+    }
+
+    // sets buffer order and checks layout version
+    static void getHeader(ByteBuffer buffer) throws IOException {
+        buffer.order(buffer.get() == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+    }
+
+    static int headerSize() {
+        return 1 + Integer.BYTES;
+    }
+
+    static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+    }
+
+    static long[] getLongs(ByteBuffer buffer, int length) {
+        long[] values = new long[length];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + length * Long.BYTES);
+        return values;
+    }
+
+    static void putFloats(ByteBuffer buffer, float[] values) {
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+    }
+
+    static float[] getFloats(ByteBuffer buffer, int length) {
+        float[] values = new float[length];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + length * Float.BYTES);
+        return values;
+    }
+
+    static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+    static double[] getDoubles(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + length * Double.BYTES);
+        return values;
+    }
+
+    static byte[] getBytes(ByteBuffer buffer, int length) {
+        byte[] values = new byte[length];
+        buffer.get(values);
+        return values;
+    }
+
+    // variable-length sections are written as length-prefixed blobs
+
+    @FunctionalInterface
+    interface BlobWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface BlobReader<T> {
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    static byte[] toBlob(BlobWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static int blobSize(byte[] blob) {
+        return Integer.BYTES + blob.length;
+    }
+
+    static void putBlob(ByteBuffer buffer, byte[] blob) {
+        buffer.putInt(blob.length);
+        buffer.put(blob);
+    }
+
+    static <T> T getBlob(ByteBuffer buffer, BlobReader<T> reader) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupted snapshot section");
+        }
+        int offset = buffer.arrayOffset() + buffer.position();
+        buffer.position(buffer.position() + length);
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(buffer.array(), offset, length))) {
+            return reader.read(in);
+        }
+    }
+
+    static IOException corrupted(BufferUnderflowException e) {
+        return new IOException("Snapshot is truncated", e);
+    }
+}
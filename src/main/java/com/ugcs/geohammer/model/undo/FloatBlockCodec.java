@@ -0,0 +1,195 @@
+package com.ugcs.geohammer.model.undo;
+
+import com.ugcs.geohammer.util.Check;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compressed float arrays in the temp store.
+// Values are split into chunks. Chunks of integral values, as decoded
+// from integer sample formats, store differences of neighbouring
+// values; other chunks store bits of each value XOR-ed with the
+// previous value. Results are split into byte planes, so that equal
+// high bytes form long runs for the deflate coder. Chunk layout:
+// byte mode, int numValues, int compressedLength, compressed planes.
+final class FloatBlockCodec {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int CHUNK_HEADER_SIZE = 1 + 2 * Integer.BYTES;
+
+    private static final byte MODE_XOR = 0;
+
+    private static final byte MODE_DELTA = 1;
+
+    private FloatBlockCodec() {
+    }
+
+    private static boolean isIntegral(float[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            float value = values[offset + i];
+            // excludes -0 that does not survive the round trip
+            if (value != (int) value || Float.floatToRawIntBits(value) == 0x80000000) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putPlanes(byte[] planes, int length, int i, int x) {
+        planes[i] = (byte) (x >>> 24);
+        planes[length + i] = (byte) (x >>> 16);
+        planes[2 * length + i] = (byte) (x >>> 8);
+        planes[3 * length + i] = (byte) x;
+    }
+
+    private static int getPlanes(byte[] planes, int length, int i) {
+        return (planes[i] & 0xFF) << 24
+                | (planes[length + i] & 0xFF) << 16
+                | (planes[2 * length + i] & 0xFF) << 8
+                | planes[3 * length + i] & 0xFF;
+    }
+
+    private static byte split(float[] values, int offset, int length, byte[] planes) {
+        if (isIntegral(values, offset, length)) {
+            int prev = 0;
+            for (int i = 0; i < length; i++) {
+                int value = (int) values[offset + i];
+                int delta = value - prev;
+                prev = value;
+                // zigzag keeps small negative deltas small
+                putPlanes(planes, length, i, (delta << 1) ^ (delta >> 31));
+            }
+            return MODE_DELTA;
+        }
+        int prev = 0;
+        for (int i = 0; i < length; i++) {
+            int bits = Float.floatToRawIntBits(values[offset + i]);
+            putPlanes(planes, length, i, bits ^ prev);
+            prev = bits;
+        }
+        return MODE_XOR;
+    }
+
+    private static void join(byte mode, byte[] planes, float[] values, int offset, int length)
+            throws IOException {
+        int prev = 0;
+        switch (mode) {
+            case MODE_DELTA -> {
+                for (int i = 0; i < length; i++) {
+                    int x = getPlanes(planes, length, i);
+                    prev += (x >>> 1) ^ -(x & 1);
+                    values[offset + i] = prev;
+                }
+            }
+            case MODE_XOR -> {
+                for (int i = 0; i < length; i++) {
+                    prev ^= getPlanes(planes, length, i);
+                    values[offset + i] = Float.intBitsToFloat(prev);
+                }
+            }
+            default -> throw new IOException("Unknown chunk mode: " + mode);
+        }
+    }
+
+    static void write(FileChannel channel, float[] values) throws IOException {
+        Check.notNull(channel);
+        Check.notNull(values);
+
+        int maxPlanes = 4 * Math.min(values.length, CHUNK_SIZE);
+        byte[] planes = new byte[maxPlanes];
+        // deflate output may slightly exceed the input
+        byte[] compressed = new byte[maxPlanes + (maxPlanes >> 6) + 64];
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            for (int offset = 0; offset < values.length; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, values.length - offset);
+                byte mode = split(values, offset, length, planes);
+
+                deflater.reset();
+                deflater.setInput(planes, 0, 4 * length);
+                deflater.finish();
+                int compressedLength = 0;
+                while (!deflater.finished()) {
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                    Check.condition(compressedLength < compressed.length || deflater.finished(),
+                            "Compressed chunk exceeds the buffer");
+                }
+
+                header.clear();
+                header.put(mode).putInt(length).putInt(compressedLength).flip();
+                writeFully(channel, header);
+                writeFully(channel, ByteBuffer.wrap(compressed, 0, compressedLength));
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void read(FileChannel channel, float[] values) throws IOException {
+        Check.notNull(channel);
+        Check.notNull(values);
+
+        byte[] planes = new byte[4 * Math.min(values.length, CHUNK_SIZE)];
+        byte[] compressed = new byte[0];
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            for (int offset = 0; offset < values.length; ) {
+                header.clear();
+                readFully(channel, header);
+                header.flip();
+                byte mode = header.get();
+                int length = header.getInt();
+                int compressedLength = header.getInt();
+                if (length <= 0 || length > values.length - offset || compressedLength < 0) {
+                    throw new IOException("Corrupted chunk header");
+                }
+                if (compressed.length < compressedLength) {
+                    compressed = new byte[compressedLength];
+                }
+                readFully(channel, ByteBuffer.wrap(compressed, 0, compressedLength));
+
+                inflater.reset();
+                inflater.setInput(compressed, 0, compressedLength);
+                int planesLength = 0;
+                while (planesLength < 4 * length) {
+                    int n = inflater.inflate(planes, planesLength, 4 * length - planesLength);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated chunk");
+                    }
+                    planesLength += n;
+                }
+                join(mode, planes, values, offset, length);
+                offset += length;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+}
@@ -3,17 +3,19 @@ package com.ugcs.geohammer.model.undo;
 import com.ugcs.geohammer.format.GeoData;
 import com.ugcs.geohammer.model.Column;
 import com.ugcs.geohammer.model.ColumnSchema;
+import com.ugcs.geohammer.util.Check;
 import com.ugcs.geohammer.util.Nulls;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// Geo data in a columnar layout, see TraceCodec.
 public final class GeoDataCodec {
 
     private static final byte TAG_NULL = 0;
@@ -28,6 +30,12 @@ public final class GeoDataCodec {
 
     private static final byte TAG_INTEGER = 5;
 
+    private static final byte KIND_TAGGED = 0;
+
+    private static final byte KIND_DOUBLE = 1;
+
+    private static final byte KIND_INTEGER = 2;
+
     private GeoDataCodec() {
     }
 
@@ -75,20 +83,6 @@ public final class GeoDataCodec {
         return schema;
     }
 
-    private static void writeTimestamp(DataOutput out, LocalDateTime dateTime) throws IOException {
-        long timestamp = dateTime != null
-                ? dateTime.toInstant(ZoneOffset.UTC).toEpochMilli()
-                : -1;
-        out.writeLong(timestamp);
-    }
-
-    private static LocalDateTime readTimestamp(DataInput in) throws IOException {
-        long timestamp = in.readLong();
-        return timestamp != -1
-                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.UTC)
-                : null;
-    }
-
     private static void writeValue(DataOutput out, Object value) throws IOException {
         switch (value) {
             case null -> out.writeByte(TAG_NULL);
@@ -129,45 +123,157 @@ public final class GeoDataCodec {
         };
     }
 
-    private static void writeGeoData(DataOutput out, GeoData geoData) throws IOException {
-        writeTimestamp(out, geoData.getDateTime());
-        int numColumns = geoData.getSchema().numColumns();
-        for (int i = 0; i < numColumns; i++) {
-            writeValue(out, geoData.getValue(i));
+    private static byte getKind(List<GeoData> values, int column) {
+        boolean doubles = true;
+        boolean ints = true;
+        for (GeoData geoData : values) {
+            Object value = geoData.getValue(column);
+            if (value == null) {
+                continue;
+            }
+            doubles &= value instanceof Double;
+            ints &= value instanceof Integer;
+            if (!doubles && !ints) {
+                return KIND_TAGGED;
+            }
         }
+        return doubles ? KIND_DOUBLE : KIND_INTEGER;
+    }
+
+    private static byte[] toTaggedBlob(List<GeoData> values, int column) throws IOException {
+        return ColumnBuffers.toBlob(out -> {
+            for (GeoData geoData : values) {
+                writeValue(out, geoData.getValue(column));
+            }
+        });
     }
 
-    private static GeoData readGeoData(DataInput in, ColumnSchema schema) throws IOException {
-        GeoData geoData = new GeoData(schema);
-        geoData.setDateTime(readTimestamp(in));
+    // numeric columns are stored as a presence column
+    // and a primitive column, other as tagged values
+    public static ByteBuffer write(List<GeoData> values) throws IOException {
+        values = Nulls.toEmpty(values);
+        ColumnSchema schema = !values.isEmpty()
+                ? values.getFirst().getSchema()
+                : new ColumnSchema();
+        int n = values.size();
         int numColumns = schema.numColumns();
-        for (int i = 0; i < numColumns; i++) {
-            geoData.setValue(i, readValue(in));
+
+        byte[] schemaBlob = ColumnBuffers.toBlob(out -> writeSchema(out, schema));
+        byte[] kinds = new byte[numColumns];
+        byte[][] taggedBlobs = new byte[numColumns][];
+        long size = ColumnBuffers.headerSize()
+                + Integer.BYTES
+                + ColumnBuffers.blobSize(schemaBlob)
+                + (long) n * Long.BYTES;
+        for (int j = 0; j < numColumns; j++) {
+            kinds[j] = getKind(values, j);
+            size += 1;
+            size += switch (kinds[j]) {
+                case KIND_DOUBLE -> (long) n * (1 + Double.BYTES);
+                case KIND_INTEGER -> (long) n * (1 + Integer.BYTES);
+                default -> {
+                    taggedBlobs[j] = toTaggedBlob(values, j);
+                    yield ColumnBuffers.blobSize(taggedBlobs[j]);
+                }
+            };
         }
-        return geoData;
-    }
 
-    public static void write(DataOutput out, List<GeoData> values) throws IOException {
-        if (Nulls.isNullOrEmpty(values)) {
-            out.writeInt(0);
-            out.writeInt(0);
-            return;
+        ByteBuffer buffer = ColumnBuffers.allocate(size);
+        ColumnBuffers.putHeader(buffer);
+        buffer.putInt(n);
+        ColumnBuffers.putBlob(buffer, schemaBlob);
+
+        long[] timestamps = new long[n];
+        for (int i = 0; i < n; i++) {
+            Long timestamp = values.get(i).getTimestamp();
+            timestamps[i] = timestamp != null ? timestamp : -1;
         }
-        ColumnSchema schema = values.getFirst().getSchema();
-        writeSchema(out, schema);
-        out.writeInt(values.size());
-        for (GeoData value : values) {
-            writeGeoData(out, value);
+        ColumnBuffers.putLongs(buffer, timestamps);
+
+        byte[] present = new byte[n];
+        for (int j = 0; j < numColumns; j++) {
+            buffer.put(kinds[j]);
+            switch (kinds[j]) {
+                case KIND_DOUBLE -> {
+                    double[] column = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        Object value = values.get(i).getValue(j);
+                        present[i] = (byte) (value != null ? 1 : 0);
+                        column[i] = value != null ? (Double) value : 0;
+                    }
+                    buffer.put(present);
+                    ColumnBuffers.putDoubles(buffer, column);
+                }
+                case KIND_INTEGER -> {
+                    int[] column = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        Object value = values.get(i).getValue(j);
+                        present[i] = (byte) (value != null ? 1 : 0);
+                        column[i] = value != null ? (Integer) value : 0;
+                    }
+                    buffer.put(present);
+                    ColumnBuffers.putInts(buffer, column);
+                }
+                default -> ColumnBuffers.putBlob(buffer, taggedBlobs[j]);
+            }
         }
+        return buffer.flip();
     }
 
-    public static List<GeoData> read(DataInput in) throws IOException {
-        ColumnSchema schema = readSchema(in);
-        int numRows = in.readInt();
-        List<GeoData> values = new ArrayList<>(numRows);
-        for (int i = 0; i < numRows; i++) {
-            values.add(readGeoData(in, schema));
+    public static List<GeoData> read(ByteBuffer buffer) throws IOException {
+        Check.notNull(buffer);
+
+        try {
+            ColumnBuffers.getHeader(buffer);
+            int n = buffer.getInt();
+            if (n < 0 || (long) n * Long.BYTES > buffer.remaining()) {
+                throw new IOException("Snapshot is truncated");
+            }
+            ColumnSchema schema = ColumnBuffers.getBlob(buffer, GeoDataCodec::readSchema);
+            int numColumns = schema.numColumns();
+
+            long[] timestamps = ColumnBuffers.getLongs(buffer, n);
+            GeoData[] values = new GeoData[n];
+            for (int i = 0; i < n; i++) {
+                GeoData geoData = new GeoData(schema);
+                geoData.setTimestamp(timestamps[i] != -1 ? timestamps[i] : null);
+                values[i] = geoData;
+            }
+
+            for (int j = 0; j < numColumns; j++) {
+                int column = j;
+                byte kind = buffer.get();
+                switch (kind) {
+                    case KIND_DOUBLE -> {
+                        byte[] present = ColumnBuffers.getBytes(buffer, n);
+                        double[] doubles = ColumnBuffers.getDoubles(buffer, n);
+                        for (int i = 0; i < n; i++) {
+                            if (present[i] != 0) {
+                                values[i].setValue(column, doubles[i]);
+                            }
+                        }
+                    }
+                    case KIND_INTEGER -> {
+                        byte[] present = ColumnBuffers.getBytes(buffer, n);
+                        int[] ints = ColumnBuffers.getInts(buffer, n);
+                        for (int i = 0; i < n; i++) {
+                            if (present[i] != 0) {
+                                values[i].setValue(column, ints[i]);
+                            }
+                        }
+                    }
+                    case KIND_TAGGED -> ColumnBuffers.getBlob(buffer, in -> {
+                        for (int i = 0; i < n; i++) {
+                            values[i].setValue(column, readValue(in));
+                        }
+                        return null;
+                    });
+                    default -> throw new IOException("Unknown column kind: " + kind);
+                }
+            }
+            return new ArrayList<>(Arrays.asList(values));
+        } catch (BufferUnderflowException e) {
+            throw ColumnBuffers.corrupted(e);
         }
-        return values;
     }
 }
@@ -0,0 +1,137 @@
+package com.ugcs.geohammer.model.undo;
+
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
+import com.ugcs.geohammer.format.gpr.SampleNormalizer;
+import com.ugcs.geohammer.format.gpr.SamplePageCache;
+import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.util.Check;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Samples of a matrix captured for undo snapshots.
+// Unmodified pages of source files keep their row loaders,
+// other pages are written to the temp store. A block is shared
+// by the snapshots taken while its matrix is not modified
+// and is deleted when the last snapshot releases it.
+// Stored bytes of live blocks are summed in a shared counter.
+public final class SampleBlock {
+
+    private final int numRows;
+
+    private final int stride;
+
+    // row loaders of a reloadable matrix
+    private final Trace.SampleLoader @Nullable [] loaders;
+
+    private final @Nullable SamplePageCache pageCache;
+
+    private final @Nullable SampleNormalizer quantization;
+
+    // stored samples of a modified matrix
+    private final TempStore.@Nullable Entry entry;
+
+    // bytes of live blocks, shared by the blocks of a store
+    private final AtomicLong totalBytes;
+
+    // bytes of the entry counted in the total,
+    // uncompressed size while the entry is being written
+    private long size;
+
+    private int refCount = 1;
+
+    private SampleBlock(SampleMatrix matrix, Trace.SampleLoader @Nullable [] loaders,
+            TempStore.@Nullable Entry entry, AtomicLong totalBytes) {
+        this.numRows = matrix.numRows();
+        this.stride = matrix.getStride();
+        this.loaders = loaders;
+        this.pageCache = matrix.getPageCache();
+        this.quantization = matrix.getQuantization();
+        this.entry = entry;
+        this.totalBytes = totalBytes;
+    }
+
+    static SampleBlock create(SampleMatrix matrix, TempStore tempStore, AtomicLong totalBytes)
+            throws IOException {
+        Check.notNull(matrix);
+        Check.notNull(tempStore);
+        Check.notNull(totalBytes);
+
+        // writes after this point mark the matrix modified again
+        matrix.clearModified();
+        if (matrix.isReloadable()) {
+            Trace.SampleLoader[] loaders = new Trace.SampleLoader[matrix.numRows()];
+            for (int row = 0; row < loaders.length; row++) {
+                loaders[row] = matrix.getRowLoader(row);
+            }
+            return new SampleBlock(matrix, loaders, null, totalBytes);
+        }
+        // copy is compressed and written in background
+        // while the matrix is changed by the caller
+        float[] samples = new float[matrix.numRows() * matrix.getStride()];
+        matrix.copySamples(0, samples, 0, samples.length);
+        TempStore.Entry entry = tempStore.newEntry();
+        SampleBlock block = new SampleBlock(matrix, null, entry, totalBytes);
+        block.resize((long) samples.length * Float.BYTES);
+        entry.writeFloatsAsync(samples, block::resize);
+        return block;
+    }
+
+    // bytes in the temp store, uncompressed size
+    // while the block is being written
+    public synchronized long sizeInBytes() {
+        return size;
+    }
+
+    private synchronized void resize(long newSize) {
+        if (refCount == 0) {
+            return;
+        }
+        totalBytes.addAndGet(newSize - size);
+        size = newSize;
+    }
+
+    // new matrix with the block samples
+    SampleMatrix restore() throws IOException {
+        SampleMatrix matrix = new SampleMatrix(numRows, stride);
+        matrix.setPageCache(pageCache);
+        matrix.setQuantization(quantization);
+        if (loaders != null) {
+            for (int row = 0; row < numRows; row++) {
+                matrix.setRowLoader(row, loaders[row]);
+            }
+        }
+        if (entry != null) {
+            matrix.write(entry::readFloats);
+        }
+        return matrix;
+    }
+
+    // false when the block is already deleted
+    synchronized boolean retain() {
+        if (refCount == 0) {
+            return false;
+        }
+        refCount++;
+        return true;
+    }
+
+    public void release() {
+        synchronized (this) {
+            if (refCount == 0) {
+                return;
+            }
+            refCount--;
+            if (refCount > 0) {
+                return;
+            }
+            totalBytes.addAndGet(-size);
+            size = 0;
+        }
+        // closing waits for a running write, which resizes the block
+        if (entry != null) {
+            entry.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ugcs.geohammer.model.undo;
+
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
+import com.ugcs.geohammer.util.Check;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Shares sample blocks between snapshots: a snapshot of a matrix
+// that was not modified since its last block reuses that block.
+@Component
+public class SampleBlockStore {
+
+    private final TempStore tempStore;
+
+    // last block of a matrix
+    private final Map<SampleMatrix, SampleBlock> blocks = new WeakHashMap<>();
+
+    // bytes of the blocks not yet released
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public SampleBlockStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    // block holding the current samples of the matrix,
+    // caller releases the block when it is no longer needed
+    public synchronized SampleBlock acquire(SampleMatrix matrix) throws IOException {
+        Check.notNull(matrix);
+
+        SampleBlock block = blocks.get(matrix);
+        if (block != null && !matrix.isModified() && block.retain()) {
+            return block;
+        }
+        block = SampleBlock.create(matrix, tempStore, totalBytes);
+        blocks.put(matrix, block);
+        return block;
+    }
+
+    // stored bytes of the live blocks, a block is counted
+    // once however many snapshots share it
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public SampleMatrix restore(SampleBlock block) throws IOException {
+        Check.notNull(block);
+
+        return block.restore();
+    }
+
+    // matrix restored from the block holds the block samples
+    // until it is modified
+    public synchronized void register(SampleMatrix matrix, SampleBlock block) {
+        Check.notNull(matrix);
+        Check.notNull(block);
+
+        matrix.clearModified();
+        blocks.put(matrix, block);
+    }
+}
@@ -2,6 +2,7 @@ package com.ugcs.geohammer.model.undo;
 
 import com.ugcs.geohammer.util.Check;
 import jakarta.annotation.PreDestroy;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -11,11 +12,21 @@ import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 @Component
 public class TempStore {
@@ -28,8 +39,14 @@ public class TempStore {
 
     private final Path basePath;
 
+    private static final int NUM_WRITERS = 2;
+
     private final AtomicLong sequence = new AtomicLong();
 
+    // compresses and writes sample arrays in background
+    private final ExecutorService writers = Executors.newFixedThreadPool(NUM_WRITERS,
+            Thread.ofPlatform().name("temp-store-writer-", 0).daemon().factory());
+
     public TempStore() throws IOException {
         this.basePath = Files.createTempDirectory(DIRECTORY_PREFIX);
         log.info("Temp directory created: {}", basePath);
@@ -37,7 +54,7 @@ public class TempStore {
 
     public Entry newEntry() {
         Path path = basePath.resolve(sequence.incrementAndGet() + FILE_SUFFIX);
-        return new Entry(path);
+        return new Entry(path, writers);
     }
 
     private static void deleteQuietly(Path path) {
@@ -50,6 +67,7 @@ public class TempStore {
 
     @PreDestroy
     public void close() {
+        writers.shutdownNow();
         try (DirectoryStream<Path> paths = Files.newDirectoryStream(basePath)) {
             for (Path path : paths) {
                 deleteQuietly(path);
@@ -76,8 +94,14 @@ public class TempStore {
 
         private final Path path;
 
-        Entry(Path path) {
+        private final ExecutorService writers;
+
+        // background write of the entry
+        private volatile @Nullable FutureTask<Void> pending;
+
+        Entry(Path path, ExecutorService writers) {
             this.path = Check.notNull(path);
+            this.writers = Check.notNull(writers);
         }
 
         public void write(Writer writer) throws IOException {
@@ -93,14 +117,119 @@ public class TempStore {
 
         public <T> T read(Reader<T> reader) throws IOException {
             Check.notNull(reader);
+            awaitPending();
             try (DataInputStream in = new DataInputStream(
                     new BufferedInputStream(Files.newInputStream(path)))) {
                 return reader.read(in);
             }
         }
 
+        // writes remaining bytes of the buffer
+        public void write(ByteBuffer buffer) throws IOException {
+            Check.notNull(buffer);
+            try (FileChannel channel = openForWrite()) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(path);
+                throw e;
+            }
+        }
+
+        // whole entry in a single read, the buffer is not mapped
+        // to keep the file deletable while the buffer is reachable
+        public ByteBuffer readBuffer() throws IOException {
+            awaitPending();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                Check.condition(size <= Integer.MAX_VALUE, "Entry is too large");
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException();
+                    }
+                }
+                return buffer.flip();
+            }
+        }
+
+        private FileChannel openForWrite() throws IOException {
+            return FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        // returns bytes written
+        public long writeFloats(float[] values) throws IOException {
+            Check.notNull(values);
+            try (FileChannel channel = openForWrite()) {
+                FloatBlockCodec.write(channel, values);
+                return channel.size();
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(path);
+                throw e;
+            }
+        }
+
+        // values are compressed and written in background,
+        // caller should not change the array after the call;
+        // listener receives bytes written when the write completes
+        public void writeFloatsAsync(float[] values, LongConsumer written) {
+            Check.notNull(values);
+            Check.notNull(written);
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                written.accept(writeFloats(values));
+                return null;
+            });
+            pending = task;
+            writers.execute(task);
+        }
+
+        // fills the whole array
+        public void readFloats(float[] values) throws IOException {
+            Check.notNull(values);
+            awaitPending();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                FloatBlockCodec.read(channel, values);
+            }
+        }
+
+        // a write that is not started yet runs in the caller thread,
+        // so a reader never waits for writes of other entries
+        private void awaitPending() throws IOException {
+            FutureTask<Void> task = pending;
+            if (task == null) {
+                return;
+            }
+            task.run();
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
         @Override
         public void close() {
+            FutureTask<Void> task = pending;
+            if (task != null && !task.cancel(false)) {
+                // write is running, file is deleted when it completes
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | CancellationException e) {
+                    // nothing to keep
+                }
+            }
             deleteQuietly(path);
         }
     }
@@ -1,145 +1,208 @@
 package com.ugcs.geohammer.model.undo;
 
-import com.github.thecoldwine.sigrun.common.TraceHeader;
-import com.ugcs.geohammer.format.gpr.GprFile;
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
 import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.format.gpr.segy.TraceHeaderView;
 import com.ugcs.geohammer.model.IndexRange;
 import com.ugcs.geohammer.model.LatLon;
+import com.ugcs.geohammer.util.Check;
 import com.ugcs.geohammer.util.Nulls;
 
-import java.io.DataInput;
-import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// Trace metadata in a columnar layout: every field of all traces
+// is stored as a fixed-stride column that is put and read in bulk.
+// Samples are stored in blocks, a trace refers to a row of a block.
 public final class TraceCodec {
 
-    private TraceCodec() {
-    }
+    private static final int FLAG_HEADER = 1;
 
-    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
-        out.writeBoolean(bytes != null);
-        if (bytes != null) {
-            out.writeInt(bytes.length);
-            out.write(bytes);
-        }
-    }
+    private static final int FLAG_LAT_LON = 1 << 1;
 
-    private static byte[] readBytes(DataInput in) throws IOException {
-        if (!in.readBoolean()) {
-            return null;
-        }
-        byte[] bytes = new byte[in.readInt()];
-        in.readFully(bytes);
-        return bytes;
-    }
+    private static final int FLAG_RANGE = 1 << 2;
 
-    private static void writeFloats(DataOutput out, float[] values) throws IOException {
-        out.writeInt(values.length);
-        for (float value : values) {
-            out.writeFloat(value);
-        }
-    }
+    private static final int FLAG_MARKED = 1 << 3;
 
-    private static float[] readFloats(DataInput in) throws IOException {
-        float[] values = new float[in.readInt()];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = in.readFloat();
-        }
-        return values;
-    }
+    // bytes per trace in the columns besides the header
+    private static final int TRACE_STRIDE = 1
+            + 6 * Integer.BYTES
+            + 3 * Double.BYTES
+            + Long.BYTES
+            + Float.BYTES;
 
-    private static void writeLatLon(DataOutput out, LatLon latLon) throws IOException {
-        out.writeBoolean(latLon != null);
-        if (latLon != null) {
-            out.writeDouble(latLon.getLatDgr());
-            out.writeDouble(latLon.getLonDgr());
-        }
-    }
-
-    private static LatLon readLatLon(DataInput in) throws IOException {
-        if (!in.readBoolean()) {
-            return null;
-        }
-        return new LatLon(in.readDouble(), in.readDouble());
-    }
-
-    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
-        long timestamp = instant != null ? instant.toEpochMilli() : -1;
-        out.writeLong(timestamp);
-    }
-
-    private static Instant readInstant(DataInput in) throws IOException {
-        long timestamp = in.readLong();
-        return timestamp != -1 ? Instant.ofEpochMilli(timestamp) : null;
-    }
-
-    private static void writeIndexRange(DataOutput out, IndexRange range) throws IOException {
-        out.writeBoolean(range != null);
-        if (range != null) {
-            out.writeInt(range.from());
-            out.writeInt(range.to());
-        }
+    private TraceCodec() {
     }
 
-    private static IndexRange readIndexRange(DataInput in) throws IOException {
-        if (!in.readBoolean()) {
-            return null;
+    private static int getHeaderLength(List<Trace> traces) {
+        int headerLength = 0;
+        for (Trace trace : traces) {
+            byte[] header = trace.getBinHeader();
+            if (header == null) {
+                continue;
+            }
+            if (headerLength == 0) {
+                headerLength = header.length;
+            }
+            Check.condition(header.length == headerLength,
+                    "Trace headers differ in length");
         }
-        return new IndexRange(in.readInt(), in.readInt());
-    }
-
-    private static void writeTrace(DataOutput out, Trace trace) throws IOException {
-        writeBytes(out, trace.getBinHeader());
-        writeFloats(out, trace.getFileSamples());
-        writeLatLon(out, trace.getLatLon());
-        writeInstant(out, trace.getDateTime());
-        writeIndexRange(out, trace.getSampleRange());
-        out.writeDouble(trace.getPrevDist());
-        out.writeInt(trace.getMaxIndex());
-        out.writeFloat(trace.getReceiverAltitude());
-        out.writeBoolean(trace.isMarked());
+        return headerLength;
     }
 
-    private static Trace readTrace(DataInput in, ByteOrder order) throws IOException {
-        byte[] binHeader = readBytes(in);
-        TraceHeader header = binHeader != null
-                ? GprFile.traceHeaderReader.read(binHeader, order)
-                : null;
-        float[] samples = readFloats(in);
-        LatLon latLon = readLatLon(in);
-        Instant dateTime = readInstant(in);
-
-        Trace trace = new Trace(binHeader, header, samples, latLon, dateTime);
-        trace.setSampleRange(readIndexRange(in));
-        trace.setPrevDist(in.readDouble());
-        trace.setMaxIndex(in.readInt());
-        trace.setReceiverAltitude(in.readFloat());
-        trace.setMarked(in.readBoolean());
-        return trace;
-    }
-
-    public static void write(DataOutput out, List<Trace> traces, ByteOrder order) throws IOException {
+    // traceBlocks holds block index of every trace
+    public static ByteBuffer write(List<Trace> traces, int[] traceBlocks, ByteOrder order)
+            throws IOException {
         traces = Nulls.toEmpty(traces);
-        out.writeBoolean(order == ByteOrder.LITTLE_ENDIAN);
-        out.writeInt(traces.size());
-        for (Trace trace : traces) {
-            writeTrace(out, trace);
+        Check.notNull(traceBlocks);
+        Check.condition(traceBlocks.length == traces.size());
+
+        int n = traces.size();
+        int headerLength = getHeaderLength(traces);
+
+        byte[] flags = new byte[n];
+        byte[] headers = new byte[n * headerLength];
+        int[] rows = new int[n];
+        int[] numSamples = new int[n];
+        int[] rangeFrom = new int[n];
+        int[] rangeTo = new int[n];
+        int[] maxIndices = new int[n];
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        double[] prevDists = new double[n];
+        long[] timestamps = new long[n];
+        float[] altitudes = new float[n];
+
+        for (int i = 0; i < n; i++) {
+            Trace trace = traces.get(i);
+            int flag = 0;
+
+            byte[] header = trace.getBinHeader();
+            if (header != null) {
+                flag |= FLAG_HEADER;
+                System.arraycopy(header, 0, headers, i * headerLength, headerLength);
+            }
+            rows[i] = trace.getRow();
+            numSamples[i] = trace.numFileSamples();
+
+            LatLon latLon = trace.getLatLon();
+            if (latLon != null) {
+                flag |= FLAG_LAT_LON;
+                lats[i] = latLon.getLatDgr();
+                lons[i] = latLon.getLonDgr();
+            }
+            Instant dateTime = trace.getDateTime();
+            timestamps[i] = dateTime != null ? dateTime.toEpochMilli() : -1;
+
+            IndexRange range = trace.getSampleRange();
+            if (range != null) {
+                flag |= FLAG_RANGE;
+                rangeFrom[i] = range.from();
+                rangeTo[i] = range.to();
+            }
+            prevDists[i] = trace.getPrevDist();
+            maxIndices[i] = trace.getMaxIndex();
+            altitudes[i] = trace.getReceiverAltitude();
+            if (trace.isMarked()) {
+                flag |= FLAG_MARKED;
+            }
+            flags[i] = (byte) flag;
         }
+
+        ByteBuffer buffer = ColumnBuffers.allocate(ColumnBuffers.headerSize()
+                + 3 * Integer.BYTES
+                + (long) n * (headerLength + TRACE_STRIDE));
+        ColumnBuffers.putHeader(buffer);
+        buffer.putInt(n);
+        buffer.putInt(headerLength);
+        buffer.putInt(order == ByteOrder.LITTLE_ENDIAN ? 1 : 0);
+
+        ColumnBuffers.putDoubles(buffer, lats);
+        ColumnBuffers.putDoubles(buffer, lons);
+        ColumnBuffers.putDoubles(buffer, prevDists);
+        ColumnBuffers.putLongs(buffer, timestamps);
+        ColumnBuffers.putInts(buffer, traceBlocks);
+        ColumnBuffers.putInts(buffer, rows);
+        ColumnBuffers.putInts(buffer, numSamples);
+        ColumnBuffers.putInts(buffer, rangeFrom);
+        ColumnBuffers.putInts(buffer, rangeTo);
+        ColumnBuffers.putInts(buffer, maxIndices);
+        ColumnBuffers.putFloats(buffer, altitudes);
+        buffer.put(flags);
+        buffer.put(headers);
+        return buffer.flip();
     }
 
-    public static List<Trace> read(DataInput in) throws IOException {
-        ByteOrder order = in.readBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
-        int numTraces = in.readInt();
-        List<Trace> traces = new ArrayList<>(numTraces);
-        for (int i = 0; i < numTraces; i++) {
-            Trace trace = readTrace(in, order);
-            trace.setIndex(i);
-            traces.add(trace);
+    // matrices are restored blocks in the block index order
+    public static List<Trace> read(ByteBuffer buffer, List<SampleMatrix> matrices) throws IOException {
+        Check.notNull(buffer);
+        Check.notNull(matrices);
+
+        try {
+            ColumnBuffers.getHeader(buffer);
+            int n = buffer.getInt();
+            int headerLength = buffer.getInt();
+            ByteOrder order = buffer.getInt() == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            if (n < 0 || headerLength < 0
+                    || (long) n * (headerLength + TRACE_STRIDE) > buffer.remaining()) {
+                throw new IOException("Snapshot is truncated");
+            }
+
+            double[] lats = ColumnBuffers.getDoubles(buffer, n);
+            double[] lons = ColumnBuffers.getDoubles(buffer, n);
+            double[] prevDists = ColumnBuffers.getDoubles(buffer, n);
+            long[] timestamps = ColumnBuffers.getLongs(buffer, n);
+            int[] blocks = ColumnBuffers.getInts(buffer, n);
+            int[] rows = ColumnBuffers.getInts(buffer, n);
+            int[] numSamples = ColumnBuffers.getInts(buffer, n);
+            int[] rangeFrom = ColumnBuffers.getInts(buffer, n);
+            int[] rangeTo = ColumnBuffers.getInts(buffer, n);
+            int[] maxIndices = ColumnBuffers.getInts(buffer, n);
+            float[] altitudes = ColumnBuffers.getFloats(buffer, n);
+            byte[] flags = ColumnBuffers.getBytes(buffer, n);
+            byte[] headers = ColumnBuffers.getBytes(buffer, n * headerLength);
+
+            List<Trace> traces = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int flag = flags[i];
+                TraceHeaderView header = (flag & FLAG_HEADER) != 0
+                        ? new TraceHeaderView(Arrays.copyOfRange(headers,
+                                i * headerLength, (i + 1) * headerLength), order)
+                        : null;
+                LatLon latLon = (flag & FLAG_LAT_LON) != 0
+                        ? new LatLon(lats[i], lons[i])
+                        : null;
+                Instant dateTime = timestamps[i] != -1
+                        ? Instant.ofEpochMilli(timestamps[i])
+                        : null;
+
+                SampleMatrix matrix = matrices.get(blocks[i]);
+                int row = rows[i];
+                Trace.SampleLoader loader = matrix.isReloadable()
+                        ? matrix.getRowLoader(row)
+                        : null;
+                Trace trace = loader != null
+                        ? new Trace(header, matrix, row, numSamples[i], loader, latLon, dateTime)
+                        : new Trace(header, matrix, row, numSamples[i], latLon, dateTime);
+                trace.setSampleRange((flag & FLAG_RANGE) != 0
+                        ? new IndexRange(rangeFrom[i], rangeTo[i])
+                        : null);
+                trace.setPrevDist(prevDists[i]);
+                trace.setMaxIndex(maxIndices[i]);
+                trace.setReceiverAltitude(altitudes[i]);
+                trace.setMarked((flag & FLAG_MARKED) != 0);
+                trace.setIndex(i);
+                traces.add(trace);
+            }
+            return traces;
+        } catch (BufferUnderflowException e) {
+            throw ColumnBuffers.corrupted(e);
         }
-        return traces;
     }
 }
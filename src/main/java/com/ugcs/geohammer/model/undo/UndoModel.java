@@ -21,12 +21,24 @@ public class UndoModel {
     @Value("${undo.depth:30}")
     private int undoDepth;
 
+    // stored bytes of the undo stack, the latest frame
+    // is kept even when it exceeds the limit; blocks shared
+    // by frames are counted once and shrink when their
+    // background writes complete
+    @Value("${undo.maxBytes:4294967296}")
+    private long maxBytes;
+
     private final Deque<UndoFrame> frames = new ArrayDeque<>();
 
     private final Model model;
 
-    public UndoModel(Model model) {
+    // running total of the stored bytes, blocks are
+    // counted when acquired and until released
+    private final SampleBlockStore blockStore;
+
+    public UndoModel(Model model, SampleBlockStore blockStore) {
         this.model = model;
+        this.blockStore = blockStore;
     }
 
     public void saveSnapshot(SgyFile file) {
@@ -52,15 +64,21 @@ public class UndoModel {
         }
     }
 
+    public long getTotalBytes() {
+        return blockStore.getTotalBytes();
+    }
+
     public void push(UndoFrame frame) {
         if (frame == null) {
             return;
         }
         // push undo frame
         frames.addFirst(frame);
-        // maintain undo depth
-        if (frames.size() > undoDepth) {
+        // maintain undo depth and size
+        while (frames.size() > 1
+                && (frames.size() > undoDepth || getTotalBytes() > maxBytes)) {
             UndoFrame evicted = frames.removeLast();
+            // blocks of the evicted frame may be held by newer frames
             evicted.discard();
         }
         model.publishEvent(new UndoStackChanged(this));
@@ -77,7 +95,8 @@ public class UndoModel {
 
         // peek top frame
         UndoFrame frame = frames.removeFirst();
-        // restore frame state
+        // restore frame state, waits only for
+        // the pending writes of this frame
         frame.restore(model);
         frame.discard();
 
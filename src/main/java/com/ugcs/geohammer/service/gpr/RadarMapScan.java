@@ -9,9 +9,14 @@ import com.ugcs.geohammer.model.Model;
 import com.ugcs.geohammer.Settings;
 import com.ugcs.geohammer.model.ScanProfile;
 import com.ugcs.geohammer.model.event.WhatChanged;
+import com.ugcs.geohammer.util.RangeTasks;
+import org.jspecify.annotations.Nullable;
 
 public class RadarMapScan implements Command {
 
+	// traces per parallel task
+	private static final int TRACES_PER_TASK = 1024;
+
 	private final ArrayBuilder scaleBuilder;
 	private final Model model;
 
@@ -19,37 +24,74 @@ public class RadarMapScan implements Command {
 		this.scaleBuilder = scaleBuilder;
 		this.model = model;
 	}
-	
-	public void execute(TraceFile file, ProgressListener listener) {
 
-		if (file.getAmplScan() == null) {
-			file.setAmplScan(new ScanProfile(file.numTraces()));
+	// parameters the intensities of a file were computed for;
+	// scale arrays are compared by identity, as builders create
+	// new arrays when settings or trace values change
+	private record ScanKey(int numTraces, int start, int finish,
+			double additionalThreshold, double[][] scaleArray) {
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			return other instanceof ScanKey key
+					&& numTraces == key.numTraces
+					&& start == key.start
+					&& finish == key.finish
+					&& Double.compare(additionalThreshold, key.additionalThreshold) == 0
+					&& scaleArray == key.scaleArray;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(scaleArray);
+		}
+	}
+
+	public void execute(TraceFile file, ProgressListener listener) {
+		int numTraces = file.numTraces();
+		ScanProfile profile = file.getAmplScan();
+		if (profile == null || profile.intensity.length != numTraces) {
+			profile = new ScanProfile(numTraces);
+			file.setAmplScan(profile);
 		}
 
 		GPRChart gprChart = model.getGprChart(file);
 		if (gprChart != null) {
 			var field = gprChart.getField();
-			int start = Math.clamp(field.getSettings().getDepthStart(),
+			Settings settings = field.getSettings();
+			int start = Math.clamp(settings.getDepthStart(),
 					0, field.getMaxHeightInSamples());
 
-			int finish = Math.clamp(field.getSettings().getDepthStart() + field.getSettings().getDepthHeight(),
+			int finish = Math.clamp(settings.getDepthStart() + settings.getDepthHeight(),
 					0, field.getMaxHeightInSamples());
 
-			for (int i = 0; i < file.numTraces(); i++) {
-				Trace trace = file.getTraces().get(i);
-				double alpha = calcAlpha(trace, start, finish, field.getSettings(), scaleBuilder.build(file));
-				file.getAmplScan().intensity[i] = alpha;
+			double additionalThreshold = settings.isAutoGain() ? settings.getThreshold() : 0;
+			double[][] scaleArray = scaleBuilder.build(file);
+
+			ScanKey key = new ScanKey(numTraces, start, finish, additionalThreshold, scaleArray);
+			if (key.equals(profile.key)) {
+				return;
 			}
+
+			// not valid until all traces are scanned
+			profile.key = null;
+			Trace[] traces = file.getTraces().toArray(new Trace[0]);
+			double[] intensity = profile.intensity;
+			RangeTasks.forEach(numTraces, TRACES_PER_TASK, (from, to) -> {
+				for (int i = from; i < to; i++) {
+					intensity[i] = calcAlpha(traces[i], start, finish, additionalThreshold, scaleArray);
+				}
+			});
+			profile.key = key;
 		}
 	}
 
-	private double calcAlpha(Trace trace, int start, int finish, Settings profileSettings, double[][] scaleArray) {
+	private static double calcAlpha(Trace trace, int start, int finish, double additionalThreshold,
+			double[][] scaleArray) {
 		double mx = 0;
 
 		start = Math.clamp(start, 0, trace.numSamples());
 		finish = Math.clamp(finish, 0, trace.numSamples());
-
-		double additionalThreshold = profileSettings.isAutoGain() ? profileSettings.getThreshold() : 0;
 		
 		for (int i = start; i < finish; i++) {
 			double threshold = scaleArray[0][i];
@@ -0,0 +1,56 @@
+package com.ugcs.geohammer.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Releases file mappings without waiting for the garbage collector.
+// A mapped file cannot be deleted, renamed or overwritten on Windows
+// while the mapping exists. Access to an unmapped buffer crashes
+// the VM, callers guarantee the buffer is no longer used.
+public final class MappedBuffers {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedBuffers.class);
+
+    // bound Unsafe.invokeCleaner(ByteBuffer), null when not available
+    private static final @Nullable MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private MappedBuffers() {
+    }
+
+    private static @Nullable MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner",
+                            MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Mapped buffers are released by the garbage collector", e);
+            return null;
+        }
+    }
+
+    // when unmapping is not available the mapping is
+    // released once the buffer becomes unreachable
+    public static void unmap(@Nullable MappedByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("Failed to unmap buffer", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.ugcs.geohammer.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+
+// Runs a function over chunks of an index range [0, size)
+// in the common fork-join pool. Interrupting the calling thread
+// cancels the chunks that have not started yet, the call then
+// throws CancellationException.
+public final class RangeTasks {
+
+    private RangeTasks() {
+    }
+
+    public static void forEach(int size, int chunkSize, RangeAction action) {
+        Check.notNull(action);
+
+        reduce(size, chunkSize, (from, to) -> {
+            action.accept(from, to);
+            return null;
+        }, (a, b) -> null);
+    }
+
+    // results of adjacent chunks are combined in the index order
+    public static <T> T reduce(int size, int chunkSize, RangeFunction<T> function, BinaryOperator<T> combiner) {
+        Check.condition(size >= 0);
+        Check.condition(chunkSize > 0);
+        Check.notNull(function);
+        Check.notNull(combiner);
+
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+        if (size <= chunkSize) {
+            return function.apply(0, size);
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ForkJoinTask<T> task = ForkJoinPool.commonPool().submit(
+                new RangeTask<>(0, size, chunkSize, function, combiner, cancelled));
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RangeAction {
+
+        void accept(int from, int to);
+    }
+
+    @FunctionalInterface
+    public interface RangeFunction<T> {
+
+        T apply(int from, int to);
+    }
+
+    private static class RangeTask<T> extends RecursiveTask<T> {
+
+        private final int from;
+
+        private final int to;
+
+        private final int chunkSize;
+
+        private final RangeFunction<T> function;
+
+        private final BinaryOperator<T> combiner;
+
+        // set when the caller is interrupted,
+        // checked by every chunk before it starts
+        private final AtomicBoolean cancelled;
+
+        RangeTask(int from, int to, int chunkSize, RangeFunction<T> function,
+                BinaryOperator<T> combiner, AtomicBoolean cancelled) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.function = function;
+            this.combiner = combiner;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected T compute() {
+            if (cancelled.get()) {
+                throw new CancellationException();
+            }
+            if (to - from <= chunkSize) {
+                return function.apply(from, to);
+            }
+            // split on a chunk boundary
+            int mid = from + ((to - from) / chunkSize / 2) * chunkSize;
+            if (mid == from) {
+                mid += chunkSize;
+            }
+            RangeTask<T> left = new RangeTask<>(from, mid, chunkSize, function, combiner, cancelled);
+            RangeTask<T> right = new RangeTask<>(mid, to, chunkSize, function, combiner, cancelled);
+            left.fork();
+            T rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.ugcs.geohammer.util;
 import com.ugcs.geohammer.model.IndexRange;
 import com.ugcs.geohammer.model.LatLon;
 import com.ugcs.geohammer.format.SgyFile;
+import com.ugcs.geohammer.format.gpr.SampleMatrix;
 import com.ugcs.geohammer.format.gpr.Trace;
 import com.ugcs.geohammer.model.TraceKey;
 import com.ugcs.geohammer.format.GeoData;
@@ -43,10 +44,19 @@ public final class Traces {
         int fromIndex = range != null ? range.from() : 0;
         int toIndex = range != null ? range.to() : traces.size(); // exclusive
 
+        int[] traceLengths = new int[toIndex - fromIndex];
+        for (int i = fromIndex; i < toIndex; i++) {
+            traceLengths[i - fromIndex] = traces.get(i).numFileSamples();
+        }
+        List<SampleMatrix> matrices = SampleMatrix.allocate(traceLengths);
+
         List<Trace> newTraces = new ArrayList<>(toIndex - fromIndex);
         for (int i = fromIndex; i < toIndex; i++) {
             Trace trace = traces.get(i);
-            Trace newTrace = trace.copy();
+            int k = newTraces.size();
+            Trace newTrace = trace.copy(
+                    matrices.get(k / SampleMatrix.BLOCK_ROWS),
+                    k % SampleMatrix.BLOCK_ROWS);
             // update trace index
             newTrace.setIndex(newTraces.size());
             newTraces.add(newTrace);
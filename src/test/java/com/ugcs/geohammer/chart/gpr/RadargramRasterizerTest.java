@@ -0,0 +1,285 @@
+package com.ugcs.geohammer.chart.gpr;
+
+import com.ugcs.geohammer.format.gpr.Trace;
+import com.ugcs.geohammer.model.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that rendering in parallel stripes produces the same pixels
+// as rendering the whole frame in a single stripe, and that zoomed in
+// frames match the former single-threaded drawer.
+class RadargramRasterizerTest {
+
+    private static final int WIDTH = 1000;
+
+    private static final int HEIGHT = 400;
+
+    private static final int TOP_MARGIN = 20;
+
+    private static final int NUM_SAMPLES = 300;
+
+    private static final float MIDDLE_AMP = 100f;
+
+    private static final double THRESHOLD = 2000;
+
+    // color channel difference between the former tanh table and the LUT
+    private static final int MAX_COLOR_ERROR = 1;
+
+    private static final int[] PARALLELISM = {2, 3, 4, 7, 16};
+
+    private final Random random = new Random(20240923L);
+
+    private List<Trace> traces;
+
+    private DisplayLut lut;
+
+    @BeforeEach
+    void setUp() {
+        traces = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // some traces are shorter than the others
+            int length = i % 97 == 0 ? NUM_SAMPLES / 2 : NUM_SAMPLES;
+            float[] samples = new float[length];
+            for (int j = 0; j < length; j++) {
+                samples[j] = (float) (random.nextGaussian() * 3000);
+            }
+            traces.add(new Trace(null, samples, new LatLon(0, 0), Instant.EPOCH));
+        }
+        lut = DisplayLut.build(NUM_SAMPLES, THRESHOLD, MIDDLE_AMP, null, null);
+    }
+
+    private RadargramRasterizer.Frame frame(TracePyramid.Level level, int startTrace,
+            double horizontalScale, int startSample, double verticalScale) {
+        return frame(level, startTrace, horizontalScale, startSample, verticalScale, 0, 0, WIDTH);
+    }
+
+    private RadargramRasterizer.Frame frame(TracePyramid.Level level, int startTrace,
+            double horizontalScale, int startSample, double verticalScale,
+            int offsetX, int clipFrom, int clipTo) {
+        // visible traces as computed by the chart
+        int firstTrace = startTrace;
+        int lastTrace = Math.min(traces.size() - 1,
+                startTrace + (int) ((WIDTH + offsetX) / horizontalScale) + 1);
+        int firstSample = Math.max(0, startSample);
+        int lastSample = Math.min(NUM_SAMPLES,
+                startSample + (int) Math.ceil((HEIGHT - TOP_MARGIN) / verticalScale));
+        return new RadargramRasterizer.Frame(
+                traces,
+                level,
+                firstTrace,
+                lastTrace,
+                startTrace,
+                horizontalScale,
+                WIDTH,
+                startSample,
+                verticalScale,
+                TOP_MARGIN,
+                firstSample,
+                lastSample - firstSample,
+                0,
+                WIDTH,
+                offsetX,
+                clipFrom,
+                clipTo,
+                WIDTH,
+                lut);
+    }
+
+    private static int[] render(RadargramRasterizer.Frame frame, int parallelism) {
+        // extra row for the bottom edge of the last sample
+        int[] buffer = new int[WIDTH * (HEIGHT + 1)];
+        RadargramRasterizer.rasterize(frame, buffer, parallelism);
+        return buffer;
+    }
+
+    private static void assertSameForAnyParallelism(RadargramRasterizer.Frame frame) {
+        int[] expected = render(frame, 1);
+        int painted = 0;
+        for (int pixel : expected) {
+            if (pixel != 0) {
+                painted++;
+            }
+        }
+        assertTrue(painted > 0);
+        for (int parallelism : PARALLELISM) {
+            assertArrayEquals(expected, render(frame, parallelism), "parallelism " + parallelism);
+        }
+    }
+
+    // tanh table of the former drawer
+    private static final class Tanh {
+
+        private static final int HALF = 20000;
+
+        float thr;
+        int[] calc = new int[HALF * 2];
+
+        void setThreshold(float thr) {
+            if (this.thr != thr) {
+                this.thr = thr;
+
+                for (int i = 0; i < calc.length; i++) {
+                    int val = i - HALF;
+                    int c = (int) (127.0 - Math.tanh(val / thr) * 127.0);
+                    int color = ((c) << 16) + ((c) << 8) + c;
+
+                    calc[i] = color;
+                }
+            }
+        }
+
+        int trans(float value) {
+            int i = (int) (value + HALF);
+            i = Math.min(i, HALF * 2 - 1);
+            i = Math.max(i, 0);
+            return calc[i];
+        }
+    }
+
+    // drawing loop of the former single-threaded PrismDrawer,
+    // chart accessors are replaced by the frame geometry
+    private static int[] renderBaseline(RadargramRasterizer.Frame frame, int lastSample) {
+        int[] buffer = new int[WIDTH * (HEIGHT + 1)];
+        int bytesInRow = frame.bytesInRow();
+        List<Trace> traces = frame.traces();
+
+        Tanh tanh = new Tanh();
+        tanh.setThreshold((float) THRESHOLD);
+
+        int startTrace = frame.firstTrace();
+        int finishTrace = frame.lastTrace();
+
+        int baseOffsetX = frame.mainX() + frame.mainWidth() / 2;
+
+        float middleAmp = MIDDLE_AMP;
+
+        for (int i = startTrace; i <= finishTrace; i++) {
+            if (i < 0 || i >= traces.size()) {
+                continue;
+            }
+
+            int traceStartX = frame.traceToScreen(i);
+            int traceFinishX = frame.traceToScreen(i + 1);
+            int hscale = traceFinishX - traceStartX;
+            if (hscale < 1) {
+                continue;
+            }
+
+            Trace trace = traces.get(i);
+
+            for (int j = frame.startSample();
+                 j < Math.min(lastSample, trace.numSamples()); j++) {
+
+                int sampStart = frame.sampleToScreen(j);
+                int sampFinish = frame.sampleToScreen(j + 1);
+
+                int vscale = sampFinish - sampStart;
+                if (vscale == 0) {
+                    continue;
+                }
+
+                if (j < 0 || j >= trace.numSamples()) {
+                    continue;
+                }
+                float v = trace.getSample(j);
+                int color = tanh.trans(v - middleAmp);
+
+                int baseIndex = baseOffsetX + traceStartX + sampStart * bytesInRow;
+                for (int yt = 0; yt < vscale; yt++) {
+                    int rowStart = baseIndex + yt * bytesInRow;
+                    Arrays.fill(buffer, rowStart, rowStart + hscale, color | RadargramRasterizer.OPACITY_MASK);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    // same pixels painted, colors differ only by the quantization
+    // of the contrast curve in the former table and the LUT
+    private static void assertMatchesBaseline(int[] expected, int[] actual, String message) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i] == 0, actual[i] == 0, message + ", pixel " + i);
+            for (int shift = 0; shift < 32; shift += 8) {
+                int e = (expected[i] >>> shift) & 0xff;
+                int a = (actual[i] >>> shift) & 0xff;
+                assertTrue(Math.abs(e - a) <= MAX_COLOR_ERROR, message + ", pixel " + i);
+            }
+        }
+    }
+
+    @Test
+    void zoomedInFramesMatchBaselineDrawer() {
+        // whole traces within the main rect and no more than a sample
+        // per pixel row: the former drawer painted edge traces past
+        // the rect and skipped samples sharing a row; zoomed out views
+        // aggregate traces instead of skipping them and have no baseline
+        int startTrace = 2500;
+        for (double[] scales : new double[][] {{4.0, 1.5}, {3.7, 1.0}, {1.0, 2.3}}) {
+            double horizontalScale = scales[0];
+            double verticalScale = scales[1];
+            int startSample = 20;
+            RadargramRasterizer.Frame frame = frame(null, startTrace, horizontalScale, startSample, verticalScale);
+            frame = new RadargramRasterizer.Frame(frame.traces(), null,
+                    startTrace, startTrace + (int) (WIDTH / horizontalScale) - 1, frame.startTrace(),
+                    frame.horizontalScale(), frame.viewWidth(), frame.startSample(),
+                    frame.verticalScale(), frame.topMargin(), frame.firstSample(),
+                    frame.numSamples(), frame.mainX(), frame.mainWidth(), 0,
+                    0, WIDTH, WIDTH, lut);
+            assertMatchesBaseline(renderBaseline(frame, frame.firstSample() + frame.numSamples()),
+                    render(frame, RadargramRasterizer.defaultParallelism()),
+                    "scale " + horizontalScale + "x" + verticalScale);
+        }
+    }
+
+    @Test
+    void zoomedInTracesMatchSingleStripe() {
+        assertSameForAnyParallelism(frame(null, 2500, 3.7, 0, 1.0));
+        assertSameForAnyParallelism(frame(null, 300, 1.0, 50, 2.3));
+    }
+
+    @Test
+    void zoomedOutSamplesMatchSingleStripe() {
+        assertSameForAnyParallelism(frame(null, 2500, 0.45, 10, 0.8));
+        // groups wider than raw limit are decimated
+        assertSameForAnyParallelism(frame(null, 2500, 0.02, 0, 1.3));
+    }
+
+    @Test
+    void clippedColumnsMatchWholeFrame() {
+        // scrolled raster is completed column range by column range
+        for (double horizontalScale : new double[] {3.7, 0.45}) {
+            int[] expected = render(frame(null, 1200, horizontalScale, 0, 1.0, 137, 0, WIDTH), 4);
+            int[] buffer = new int[expected.length];
+            RadargramRasterizer.rasterize(frame(null, 1200, horizontalScale, 0, 1.0, 137, 0, 863), buffer, 4);
+            RadargramRasterizer.rasterize(frame(null, 1200, horizontalScale, 0, 1.0, 137, 863, WIDTH), buffer, 4);
+            assertArrayEquals(expected, buffer, "scale " + horizontalScale);
+        }
+    }
+
+    @Test
+    void pyramidLevelsMatchSingleStripe() throws InterruptedException {
+        CountDownLatch built = new CountDownLatch(1);
+        TracePyramid pyramid = new TracePyramid(built::countDown);
+        pyramid.update(traces, NUM_SAMPLES);
+        assertTrue(built.await(10, TimeUnit.SECONDS));
+
+        for (double horizontalScale : new double[] {0.03, 0.011, 0.004}) {
+            TracePyramid.Level level = pyramid.selectLevel(traces, NUM_SAMPLES, 1 / horizontalScale);
+            assertNotNull(level);
+            assertSameForAnyParallelism(frame(level, 2500, horizontalScale, 0, 1.1));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+import com.github.thecoldwine.sigrun.common.BinaryHeader;
+import com.github.thecoldwine.sigrun.common.DataSample;
+import com.github.thecoldwine.sigrun.common.TextHeader;
+import com.github.thecoldwine.sigrun.common.TraceHeader;
+import com.ugcs.geohammer.AppContext;
+import com.ugcs.geohammer.format.TraceFile;
+import com.ugcs.geohammer.format.gpr.segy.SampleCodec;
+import com.ugcs.geohammer.model.undo.TempStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GprFileTest {
+
+    private static final int NUM_TRACES = 3;
+
+    private static final int NUM_SAMPLES = 8;
+
+    // samples of +-500 normalize to themselves:
+    // zero average and unit reduce factor
+    private static final float AMPLITUDE = 500;
+
+    private static AnnotationConfigApplicationContext context;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void setUpContext() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(AppContext.class);
+        context.registerBean(TempStore.class);
+        context.registerBean(SamplePageCache.class,
+                () -> new SamplePageCache(0, false, context.getBean(TempStore.class)));
+        context.refresh();
+    }
+
+    @AfterAll
+    static void closeContext() {
+        context.close();
+    }
+
+    private static float[] samples() {
+        float[] samples = new float[NUM_SAMPLES];
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            samples[i] = i % 2 == 0 ? AMPLITUDE : -AMPLITUDE;
+        }
+        return samples;
+    }
+
+    private static float[] read(Trace trace) {
+        float[] values = new float[trace.numSamples()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = trace.getSample(i);
+        }
+        return values;
+    }
+
+    private File writeSegy() throws IOException {
+        File file = dir.resolve("test.sgy").toFile();
+        ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+        byte[] txtHdr = new byte[TextHeader.TEXT_HEADER_SIZE];
+        ByteBuffer binHdr = ByteBuffer.allocate(BinaryHeader.BIN_HEADER_LENGTH).order(order);
+        binHdr.putShort(16, (short) 100); // sample interval
+        binHdr.putShort(20, (short) NUM_SAMPLES);
+        binHdr.putShort(24, (short) 1); // IBM floats
+
+        try (SegyWriter writer = new SegyWriter(file, SampleCodec.create(DataSample.IBM_FP, order))) {
+            writer.writeHeaders(txtHdr, binHdr.array());
+            for (int i = 0; i < NUM_TRACES; i++) {
+                ByteBuffer header = ByteBuffer.allocate(TraceHeader.TRACE_HEADER_LENGTH).order(order);
+                header.putShort(GprFile.NUM_SAMPLES_POS, (short) NUM_SAMPLES);
+                header.putDouble(182, TraceFile.convertBackDegreeFraction(24.1 + 0.0001 * i));
+                header.putDouble(190, TraceFile.convertBackDegreeFraction(56.95));
+                writer.writeTrace(header.array(), samples(), 0, NUM_SAMPLES);
+            }
+            writer.commit();
+        }
+        return file;
+    }
+
+    @Test
+    public void savesOverMappedSource() throws IOException {
+        File file = writeSegy();
+
+        GprFile gprFile = new GprFile();
+        gprFile.open(file);
+        try {
+            gprFile.getTraces().get(1).setSample(0, -AMPLITUDE);
+            gprFile.save(file);
+
+            float[] modified = samples();
+            modified[0] = -AMPLITUDE;
+            // samples remain readable after the source is replaced
+            assertArrayEquals(modified, read(gprFile.getTraces().get(1)));
+            assertArrayEquals(samples(), read(gprFile.getTraces().get(2)));
+
+            GprFile saved = new GprFile();
+            saved.open(file);
+            try {
+                assertEquals(NUM_TRACES, saved.numTraces());
+                assertArrayEquals(samples(), read(saved.getTraces().get(0)));
+                assertArrayEquals(modified, read(saved.getTraces().get(1)));
+                assertArrayEquals(samples(), read(saved.getTraces().get(2)));
+            } finally {
+                saved.close();
+            }
+        } finally {
+            gprFile.close();
+        }
+    }
+}
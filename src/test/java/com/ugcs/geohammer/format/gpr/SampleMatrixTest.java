@@ -0,0 +1,89 @@
+package com.ugcs.geohammer.format.gpr;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import com.ugcs.geohammer.model.LatLon;
+import com.ugcs.geohammer.model.undo.TempStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SampleMatrixTest {
+
+    private static final LatLon LAT_LON = new LatLon(56.95, 24.1);
+
+    private static float[] samples(int seed, int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = seed * 100 + i;
+        }
+        return samples;
+    }
+
+    private static float[] read(Trace trace) {
+        float[] values = new float[trace.numFileSamples()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = trace.getSample(i);
+        }
+        return values;
+    }
+
+    @Test
+    public void copiesUnmodifiedTraceToPinnedMatrix() {
+        int length = 16;
+        // modified trace, its page is pinned
+        Trace modified = new Trace(null, samples(1, length), LAT_LON, Instant.EPOCH);
+        // unmodified trace loading its samples on demand
+        SampleMatrix source = new SampleMatrix(1, length);
+        Trace unmodified = new Trace(null, source, 0, length, () -> samples(2, length),
+                LAT_LON, Instant.EPOCH);
+
+        SampleMatrix matrix = new SampleMatrix(2, length);
+        Trace copy1 = modified.copy(matrix, 0);
+        Trace copy2 = unmodified.copy(matrix, 1);
+
+        assertTrue(matrix.isDirty());
+        assertArrayEquals(samples(1, length), read(copy1));
+        assertArrayEquals(samples(2, length), read(copy2));
+    }
+
+    @Test
+    public void readsRowWithoutLoadingPage() {
+        int length = 16;
+        SampleMatrix matrix = new SampleMatrix(1, length);
+        Trace trace = new Trace(null, matrix, 0, length, () -> samples(1, length),
+                LAT_LON, Instant.EPOCH);
+
+        assertArrayEquals(samples(1, length), matrix.readRow(trace.getRow()));
+        assertEquals(0, matrix.residentBytes());
+    }
+
+    @Test
+    public void reloadsEvictedDirtyPageFromSpill() throws IOException {
+        int length = 16;
+        TempStore tempStore = new TempStore();
+        try {
+            SampleMatrix matrix = new SampleMatrix(1, length);
+            Trace trace = new Trace(null, matrix, 0, length, () -> samples(1, length),
+                    LAT_LON, Instant.EPOCH);
+            trace.setSample(0, -1);
+            float[] expected = samples(1, length);
+            expected[0] = -1;
+
+            // not evicted while being written
+            matrix.write(samples -> assertFalse(matrix.evict(tempStore)));
+            // first attempt clears the reference bit
+            assertFalse(matrix.evict(tempStore));
+            assertTrue(matrix.evict(tempStore));
+            assertEquals(0, matrix.residentBytes());
+
+            assertArrayEquals(expected, read(trace));
+        } finally {
+            tempStore.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ugcs.geohammer.map.provider;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TilePackTest {
+
+    @TempDir
+    Path dir;
+
+    private TilePack open(long maxBytes) throws IOException {
+        return new TilePack(dir.resolve("test.pack"), dir.resolve("test.idx"), maxBytes);
+    }
+
+    private static byte[] data(int seed, int length) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        return data;
+    }
+
+    @Test
+    public void readsWrittenTiles() throws IOException {
+        try (TilePack pack = open(1 << 20)) {
+            pack.write(new XyzTile(1, 2, 3), data(1, 100));
+            pack.write(new XyzTile(2, 2, 3), data(2, 200));
+            pack.write(new XyzTile(1, 2, 3), data(3, 50));
+
+            assertArrayEquals(data(3, 50), pack.read(new XyzTile(1, 2, 3)));
+            assertArrayEquals(data(2, 200), pack.read(new XyzTile(2, 2, 3)));
+            assertNull(pack.read(new XyzTile(3, 2, 3)));
+        }
+    }
+
+    @Test
+    public void reopensWithPersistedIndexAndAppendedTail() throws IOException {
+        try (TilePack pack = open(1 << 20)) {
+            pack.write(new XyzTile(0, 0, 1), data(1, 10));
+        }
+        // appended after the persisted index, the index is not saved again
+        TilePack pack = open(1 << 20);
+        pack.write(new XyzTile(1, 0, 1), data(2, 20));
+
+        try (TilePack reopened = open(1 << 20)) {
+            assertEquals(2, reopened.size());
+            assertArrayEquals(data(1, 10), reopened.read(new XyzTile(0, 0, 1)));
+            assertArrayEquals(data(2, 20), reopened.read(new XyzTile(1, 0, 1)));
+        } finally {
+            pack.close();
+        }
+    }
+
+    @Test
+    public void truncatesTornRecord() throws IOException {
+        try (TilePack pack = open(1 << 20)) {
+            pack.write(new XyzTile(0, 0, 1), data(1, 10));
+            pack.write(new XyzTile(1, 0, 1), data(2, 20));
+        }
+        Files.delete(dir.resolve("test.idx"));
+        Path packPath = dir.resolve("test.pack");
+        try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (TilePack pack = open(1 << 20)) {
+            assertEquals(1, pack.size());
+            assertArrayEquals(data(1, 10), pack.read(new XyzTile(0, 0, 1)));
+            pack.write(new XyzTile(1, 0, 1), data(3, 20));
+            assertArrayEquals(data(3, 20), pack.read(new XyzTile(1, 0, 1)));
+        }
+    }
+
+    @Test
+    public void compactionKeepsRecentlyUsedTiles() throws IOException {
+        int length = 1000;
+        long maxBytes = 10_000;
+        try (TilePack pack = open(maxBytes)) {
+            XyzTile first = new XyzTile(0, 0, 10);
+            pack.write(first, data(0, length));
+            for (int i = 1; i < 30; i++) {
+                pack.write(new XyzTile(i, 0, 10), data(i, length));
+                // keeps the first tile recently used
+                assertNotNull(pack.read(first));
+            }
+            assertTrue(Files.size(dir.resolve("test.pack")) <= maxBytes);
+            assertArrayEquals(data(0, length), pack.read(first));
+            assertArrayEquals(data(29, length), pack.read(new XyzTile(29, 0, 10)));
+            assertNull(pack.read(new XyzTile(1, 0, 10)));
+        }
+        try (TilePack pack = open(maxBytes)) {
+            assertArrayEquals(data(29, length), pack.read(new XyzTile(29, 0, 10)));
+        }
+    }
+}
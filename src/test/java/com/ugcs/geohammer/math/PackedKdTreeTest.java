@@ -0,0 +1,91 @@
+package com.ugcs.geohammer.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PackedKdTreeTest {
+
+    private static final int NUM_POINTS = 2000;
+
+    private static final int NUM_QUERIES = 200;
+
+    // survey-like input: parallel lines with repeated coordinates
+    private static void fillPoints(double[] xs, double[] ys, Random random) {
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = (i / 100) * 10 + (random.nextInt(4) == 0 ? 0 : random.nextDouble());
+            ys[i] = i % 100 + random.nextDouble();
+        }
+    }
+
+    private static double distance2(double[] xs, double[] ys, int i, double x, double y) {
+        double dx = xs[i] - x;
+        double dy = ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(7);
+        double[] xs = new double[NUM_POINTS];
+        double[] ys = new double[NUM_POINTS];
+        fillPoints(xs, ys, random);
+        PackedKdTree tree = new PackedKdTree(xs, ys, NUM_POINTS);
+
+        for (int q = 0; q < NUM_QUERIES; q++) {
+            double x = random.nextDouble() * 220 - 10;
+            double y = random.nextDouble() * 120 - 10;
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < NUM_POINTS; i++) {
+                expected = Math.min(expected, distance2(xs, ys, i, x, y));
+            }
+            int nearest = tree.nearest(x, y, Double.POSITIVE_INFINITY);
+            assertEquals(expected, distance2(xs, ys, nearest, x, y));
+
+            int limited = tree.nearest(x, y, 0.5);
+            assertEquals(expected <= 0.25, limited >= 0);
+        }
+    }
+
+    @Test
+    public void boundsAndRadiusMatchBruteForce() {
+        Random random = new Random(11);
+        double[] xs = new double[NUM_POINTS];
+        double[] ys = new double[NUM_POINTS];
+        fillPoints(xs, ys, random);
+        PackedKdTree tree = new PackedKdTree(xs, ys, NUM_POINTS);
+
+        for (int q = 0; q < NUM_QUERIES; q++) {
+            double x = random.nextDouble() * 200;
+            double y = random.nextDouble() * 100;
+            double w = random.nextDouble() * 30;
+            double h = random.nextDouble() * 30;
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < NUM_POINTS; i++) {
+                if (xs[i] >= x && xs[i] <= x + w && ys[i] >= y && ys[i] <= y + h) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            tree.inBounds(x, y, x + w, y + h, actual::add);
+            actual.sort(null);
+            assertEquals(expected, actual);
+
+            expected.clear();
+            for (int i = 0; i < NUM_POINTS; i++) {
+                if (distance2(xs, ys, i, x, y) <= w * w) {
+                    expected.add(i);
+                }
+            }
+            actual.clear();
+            tree.inRadius(x, y, w, actual::add);
+            actual.sort(null);
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.ugcs.geohammer.math.sample;
+
+import com.github.thecoldwine.sigrun.converters.IBM360Converter;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks that converters produce the same bits as the scalar
+// ByteBuffer loops the sample codecs were originally built on.
+class SampleConverterTest {
+
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+    // lengths around common vector sizes to cover vector loops and scalar tails
+    private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 15, 16, 17, 31, 32, 33, 63, 64, 65, 255, 1000};
+
+    private static final int OFFSET = 3;
+
+    private final Random random = new Random(20240611L);
+
+    private List<SampleConverter> converters;
+
+    @BeforeEach
+    void setUp() {
+        converters = new ArrayList<>();
+        converters.add(new ScalarSampleConverter());
+        // vector converter when supported, tests compile
+        // without the incubating module
+        converters.add(SampleConverter.getInstance());
+    }
+
+    @Test
+    void vectorConverterIsUsedWhenSupported() {
+        Assumptions.assumeTrue(SampleConverters.isVectorSupported());
+        assertEquals("VectorSampleConverter", SampleConverter.getInstance().getClass().getSimpleName());
+    }
+
+    // reference decoders
+
+    private static float[] referenceInt16(byte[] bytes, int offset, int length, ByteOrder order,
+            boolean unsigned, int bias) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, 2 * length).order(order);
+        float[] result = new float[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = unsigned
+                    ? (buffer.getShort() & 0xFFFF) + bias
+                    : buffer.getShort() + bias;
+        }
+        return result;
+    }
+
+    private static float[] referenceInt32(byte[] bytes, int offset, int length, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, 4 * length).order(order);
+        float[] result = new float[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.getInt();
+        }
+        return result;
+    }
+
+    private static float[] referenceFloat32(byte[] bytes, int offset, int length, ByteOrder order,
+            float scale) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, 4 * length).order(order);
+        float[] result = new float[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.getFloat() * scale;
+        }
+        return result;
+    }
+
+    private static float[] referenceIbm(byte[] bytes, int offset, int length, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, 4 * length).order(order);
+        float[] result = new float[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = Float.intBitsToFloat(IBM360Converter.convert(buffer.getInt()));
+        }
+        return result;
+    }
+
+    // reference encoders
+
+    private static byte[] referenceInt16(float[] samples, int offset, int length, ByteOrder order,
+            int bias) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * length).order(order);
+        for (int i = 0; i < length; i++) {
+            buffer.putShort((short) ((int) samples[offset + i] + bias));
+        }
+        return buffer.array();
+    }
+
+    private static byte[] referenceInt32(float[] samples, int offset, int length, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * length).order(order);
+        for (int i = 0; i < length; i++) {
+            buffer.putInt((int) samples[offset + i]);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] referenceFloat32(float[] samples, int offset, int length, ByteOrder order,
+            float scale) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * length).order(order);
+        for (int i = 0; i < length; i++) {
+            buffer.putFloat(samples[offset + i] / scale);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] referenceIbm(float[] samples, int offset, int length, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * length).order(order);
+        for (int i = 0; i < length; i++) {
+            buffer.putInt(ScalarSampleConverter.toIbmBits(samples[offset + i]));
+        }
+        return buffer.array();
+    }
+
+    // test data
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    // floats of all magnitudes and signs with special values mixed in
+    private float[] randomFloats(int length, boolean finite) {
+        float[] specials = finite
+                ? new float[] {0f, -0f, 1f, -1f, 0.5f, Float.MIN_VALUE, -Float.MIN_NORMAL,
+                        Float.MAX_VALUE, -Float.MAX_VALUE, 32767.5f, -32768.7f, 1e10f, -1e10f}
+                : new float[] {Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(4);
+            values[i] = switch (kind) {
+                case 0 -> specials[random.nextInt(specials.length)];
+                case 1 -> (random.nextFloat() - 0.5f) * 100_000f;
+                case 2 -> (float) ((random.nextDouble() - 0.5) * Math.pow(2, random.nextInt(60) - 30));
+                default -> finite
+                        ? (random.nextBoolean() ? 1 : -1) * Float.intBitsToFloat(random.nextInt(0x7F800000))
+                        : Float.intBitsToFloat(random.nextInt());
+            };
+        }
+        return values;
+    }
+
+    private static void assertSameBits(float[] expected, float[] actual, String message) {
+        assertEquals(expected.length, actual.length, message);
+        for (int i = 0; i < expected.length; i++) {
+            // NaN payloads are not significant
+            assertEquals(Float.floatToIntBits(expected[i]), Float.floatToIntBits(actual[i]),
+                    message + " at " + i);
+        }
+    }
+
+    private static float[] decodeSlice(float[] dst, int length) {
+        float[] slice = new float[length];
+        System.arraycopy(dst, OFFSET, slice, 0, length);
+        return slice;
+    }
+
+    private static byte[] encodeSlice(byte[] dst, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(dst, OFFSET, slice, 0, length);
+        return slice;
+    }
+
+    // decode tests
+
+    @Test
+    void decodeInt16() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    byte[] src = randomBytes(2 * length + OFFSET);
+                    String message = converter.getClass().getSimpleName() + " " + order + " " + length;
+
+                    float[] dst = new float[length + OFFSET];
+                    converter.decodeInt16(src, OFFSET, order, false, 0, dst, OFFSET, length);
+                    assertSameBits(referenceInt16(src, OFFSET, length, order, false, 0),
+                            decodeSlice(dst, length), message);
+
+                    dst = new float[length + OFFSET];
+                    converter.decodeInt16(src, OFFSET, order, true, -32767, dst, OFFSET, length);
+                    assertSameBits(referenceInt16(src, OFFSET, length, order, true, -32767),
+                            decodeSlice(dst, length), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodeInt32() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    byte[] src = randomBytes(4 * length + OFFSET);
+                    float[] dst = new float[length + OFFSET];
+                    converter.decodeInt32(src, OFFSET, order, dst, OFFSET, length);
+                    assertSameBits(referenceInt32(src, OFFSET, length, order), decodeSlice(dst, length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodeFloat32() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    byte[] src = randomBytes(4 * length + OFFSET);
+                    float[] dst = new float[length + OFFSET];
+                    converter.decodeFloat32(src, OFFSET, order, 10000f, dst, OFFSET, length);
+                    assertSameBits(referenceFloat32(src, OFFSET, length, order, 10000f),
+                            decodeSlice(dst, length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodeIbm() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    // random bits cover zero fractions, overflow and underflow
+                    byte[] src = randomBytes(4 * length + OFFSET);
+                    float[] dst = new float[length + OFFSET];
+                    converter.decodeIbm(src, OFFSET, order, dst, OFFSET, length);
+                    assertSameBits(referenceIbm(src, OFFSET, length, order), decodeSlice(dst, length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decodeIbmEdgeCases() {
+        int[] bits = {
+                0x00000000, 0x80000000, 0x00000001, 0x80000001, 0x00FFFFFF, 0x7FFFFFFF, 0xFFFFFFFF,
+                0x41100000, 0xC276A000, 0x40100000, 0x60FFFFFF, 0x61100000, 0x21100000, 0x20FFFFFF,
+                0x7F000000, 0x3F800000, 0x1A800000, 0x21000001
+        };
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 64).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < 64; i++) {
+            buffer.putInt(bits[i % bits.length]);
+        }
+        byte[] src = buffer.array();
+        for (SampleConverter converter : converters) {
+            float[] dst = new float[64];
+            converter.decodeIbm(src, 0, ByteOrder.BIG_ENDIAN, dst, 0, 64);
+            assertSameBits(referenceIbm(src, 0, 64, ByteOrder.BIG_ENDIAN), dst,
+                    converter.getClass().getSimpleName());
+        }
+    }
+
+    // encode tests
+
+    @Test
+    void encodeInt16() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    float[] src = randomFloats(length + OFFSET, random.nextBoolean());
+                    String message = converter.getClass().getSimpleName() + " " + order + " " + length;
+
+                    byte[] dst = new byte[2 * length + OFFSET];
+                    converter.encodeInt16(src, OFFSET, 0, dst, OFFSET, order, length);
+                    assertArrayEquals(referenceInt16(src, OFFSET, length, order, 0),
+                            encodeSlice(dst, 2 * length), message);
+
+                    dst = new byte[2 * length + OFFSET];
+                    converter.encodeInt16(src, OFFSET, 32767, dst, OFFSET, order, length);
+                    assertArrayEquals(referenceInt16(src, OFFSET, length, order, 32767),
+                            encodeSlice(dst, 2 * length), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void encodeInt32() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    float[] src = randomFloats(length + OFFSET, random.nextBoolean());
+                    byte[] dst = new byte[4 * length + OFFSET];
+                    converter.encodeInt32(src, OFFSET, dst, OFFSET, order, length);
+                    assertArrayEquals(referenceInt32(src, OFFSET, length, order),
+                            encodeSlice(dst, 4 * length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void encodeFloat32() {
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    float[] src = randomFloats(length + OFFSET, true);
+                    byte[] dst = new byte[4 * length + OFFSET];
+                    converter.encodeFloat32(src, OFFSET, 10000f, dst, OFFSET, order, length);
+                    assertArrayEquals(referenceFloat32(src, OFFSET, length, order, 10000f),
+                            encodeSlice(dst, 4 * length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void encodeIbm() {
+        // infinite values are not representable in IBM format
+        for (SampleConverter converter : converters) {
+            for (ByteOrder order : ORDERS) {
+                for (int length : LENGTHS) {
+                    float[] src = randomFloats(length + OFFSET, true);
+                    byte[] dst = new byte[4 * length + OFFSET];
+                    converter.encodeIbm(src, OFFSET, dst, OFFSET, order, length);
+                    assertArrayEquals(referenceIbm(src, OFFSET, length, order),
+                            encodeSlice(dst, 4 * length),
+                            converter.getClass().getSimpleName() + " " + order + " " + length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void ibmRoundTrip() {
+        float[] src = randomFloats(1000, true);
+        for (SampleConverter converter : converters) {
+            byte[] encoded = new byte[4 * src.length];
+            converter.encodeIbm(src, 0, encoded, 0, ByteOrder.BIG_ENDIAN, src.length);
+            float[] decoded = new float[src.length];
+            converter.decodeIbm(encoded, 0, ByteOrder.BIG_ENDIAN, decoded, 0, src.length);
+            for (int i = 0; i < src.length; i++) {
+                // IBM fraction keeps at least 21 significant bits
+                float tolerance = Math.max(Math.abs(src[i]) * 0x1p-20f, Float.MIN_NORMAL);
+                assertEquals(src[i], decoded[i], tolerance, converter.getClass().getSimpleName() + " at " + i);
+            }
+        }
+    }
+}